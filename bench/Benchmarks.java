@@ -0,0 +1,611 @@
+package bench;
+
+import engine.BitGrid;
+import engine.Boundary;
+import engine.LifeEngine;
+import engine.Rule;
+import engine.Snapshot;
+import engine.Soup;
+import mvc.GameModel;
+import mvc.GridCanvas;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmarks the hot paths of the model and the view, so changes can be compared between commits: stepping
+ * a generation, counting the neighbours of every cell, filling the grid at random, and painting frames into
+ * the offscreen image of the canvas, plain, in multicolour mode, in multicolour mode on a torus and coloured by
+ * age. Each benchmark is swept over grid sizes, densities of the starting soup and, for stepping, rules.
+ * <p>
+ * Every benchmark is warmed up before it is timed, and reports operations and cell updates per second.
+ * Benchmarks that step replay the first generations of their soup over and over, 16 unless set with
+ * {@code --generations}, refilling it outside the timing, and both the warm-up and the timing start from a freshly filled soup. A
+ * result therefore measures the density and rule it is labelled with rather than the ash the soup decays
+ * into, and runs of different commits time the same generations.
+ * The bytes allocated by the benchmark thread and the collections that ran while timing are reported next
+ * to them, so allocations that creep into a hot path show up as well as slowdowns. The painting benchmarks
+ * on small grids also paint a few hundred generations untimed, comparing every frame with one painted from
+ * scratch, and stop the run if they differ.
+ * <p>
+ * Usage: {@code java bench.Benchmarks [options]}, see {@link #USAGE}. With {@code --csv} the results are
+ * printed as comma-separated values, ready to be diffed or plotted against another run.
+ */
+public class Benchmarks {
+
+    /**
+     * Help printed for invalid arguments.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java bench.Benchmarks [options]",
+            "  --benchmarks LIST  step, wide, neighbours, fill, colour, torus, age and render (default all)",
+            "  --sizes LIST       widths and heights of the grid (default 50,128,512,2048,8192)",
+            "  --densities LIST   fractions of living cells in the starting soup (default 0.02,0.25,0.75)",
+            "  --rules LIST       rules stepped, separated by commas (default B3/S23,B36/S23,B3678/S34678)",
+            "  --max-render N     largest grid painted by the colour, torus, age and render benchmarks (default 2048)",
+            "  --generations N    generations of each soup stepped before it is filled again (default 16)",
+            "  --warmup MS        time spent warming up each benchmark (default 300)",
+            "  --time MS          time spent measuring each benchmark (default 1000)",
+            "  --seed S           seed of the starting soups (default 42)",
+            "  --csv              print comma-separated values instead of a table");
+
+    /**
+     * The fewest operations timed per benchmark, however long they take.
+     */
+    private static final int MIN_OPERATIONS = 3;
+
+    /**
+     * Grids larger than this are painted one pixel per cell, smaller ones with a line around every cell.
+     */
+    private static final int SMALL_GRID = 512;
+
+    /**
+     * The largest grid whose frames are compared with frames painted from scratch.
+     */
+    private static final int VERIFIED_SIZE = 128;
+
+    /**
+     * The generations whose frames are compared with frames painted from scratch.
+     */
+    private static final int VERIFIED_GENERATIONS = 256;
+
+    /**
+     * Receives results so the JIT cannot discard the work that produced them.
+     */
+    private static volatile long sink;
+
+    /**
+     * Counts the bytes allocated by each thread, or {@code null} if the JVM cannot tell.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /**
+     * Work performed once per timed operation.
+     */
+    @FunctionalInterface
+    private interface Operation {
+
+        /**
+         * Performs the operation.
+         */
+        void run();
+    }
+
+    /**
+     * Steps a model through the first generations of its soup, filling the soup again once they are done.
+     */
+    private final class Replay {
+
+        /**
+         * The model stepped.
+         */
+        private final GameModel model;
+
+        /**
+         * The soup the model starts from.
+         */
+        private final Soup soup;
+
+        /**
+         * The generations stepped since the soup was last filled.
+         */
+        private int generation;
+
+        /**
+         * Constructs a replay of the soup a model was filled with.
+         *
+         * @param model The model, holding a soup.
+         */
+        Replay(GameModel model) {
+            this.model = model;
+            this.soup = model.getSoup();
+        }
+
+        /**
+         * Fills the soup again.
+         */
+        void restart() {
+            model.fillSoup(soup);
+            generation = 0;
+        }
+
+        /**
+         * Counts the generation about to be stepped, first filling the soup again if its generations are done.
+         */
+        void beforeStep() {
+            if (generation == generationsPerSoup) {
+                restart();
+            }
+            generation++;
+        }
+    }
+
+    /**
+     * The benchmarks to run.
+     */
+    private List<String> benchmarks = List.of("step", "wide", "neighbours", "fill", "colour", "torus", "age",
+            "render");
+
+    /**
+     * The widths and heights of the grids.
+     */
+    private int[] sizes = {50, 128, 512, 2048, 8192};
+
+    /**
+     * The fractions of living cells in the starting soups.
+     */
+    private double[] densities = {0.02, 0.25, 0.75};
+
+    /**
+     * The rules stepped.
+     */
+    private Rule[] rules = {Rule.parse("B3/S23"), Rule.parse("B36/S23"), Rule.parse("B3678/S34678")};
+
+    /**
+     * The largest grid painted.
+     */
+    private int maxRender = 2048;
+
+    /**
+     * The generations of a soup stepped before it is filled again.
+     */
+    private int generationsPerSoup = 16;
+
+    /**
+     * Time spent warming up each benchmark, in nanoseconds.
+     */
+    private long warmupNanos = 300_000_000L;
+
+    /**
+     * Time spent measuring each benchmark, in nanoseconds.
+     */
+    private long timeNanos = 1_000_000_000L;
+
+    /**
+     * The seed of the starting soups.
+     */
+    private long seed = 42;
+
+    /**
+     * A flag indicating whether results are printed as comma-separated values.
+     */
+    private boolean csv;
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args The options, see {@link #USAGE}.
+     */
+    public static void main(String[] args) {
+        // the canvas paints into an offscreen image and never needs a display
+        System.setProperty("java.awt.headless", "true");
+        Benchmarks benchmarks = new Benchmarks();
+        try {
+            benchmarks.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            benchmarks.runAll();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the options.
+     *
+     * @param args The options.
+     * @throws IllegalArgumentException If an option is unknown or its value is invalid.
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            switch (option) {
+                case "--benchmarks" -> {
+                    benchmarks = Arrays.asList(value(args, ++i, option).split(","));
+                    for (String name : benchmarks) {
+                        if (!List.of("step", "wide", "neighbours", "fill", "colour", "torus", "age", "render")
+                                .contains(name)) {
+                            throw new IllegalArgumentException("Unknown benchmark: " + name);
+                        }
+                    }
+                }
+                case "--sizes" -> sizes = Arrays.stream(value(args, ++i, option).split(","))
+                        .mapToInt(size -> (int) parsePositive(option, size)).toArray();
+                case "--densities" -> densities = Arrays.stream(value(args, ++i, option).split(","))
+                        .mapToDouble(density -> parseDensity(option, density)).toArray();
+                case "--rules" -> rules = Arrays.stream(value(args, ++i, option).split(","))
+                        .map(Rule::parse).toArray(Rule[]::new);
+                case "--max-render" -> maxRender = (int) parsePositive(option, value(args, ++i, option));
+                case "--generations" -> generationsPerSoup = (int) parsePositive(option, value(args, ++i, option));
+                case "--warmup" -> warmupNanos = parsePositive(option, value(args, ++i, option)) * 1_000_000L;
+                case "--time" -> timeNanos = parsePositive(option, value(args, ++i, option)) * 1_000_000L;
+                case "--seed" -> {
+                    try {
+                        seed = Long.parseLong(value(args, ++i, option));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException(option + " must be a number: " + args[i]);
+                    }
+                }
+                case "--csv" -> csv = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+    }
+
+    /**
+     * Gets the value following an option.
+     *
+     * @param args   The options.
+     * @param i      The index of the value.
+     * @param option The option, for the error message.
+     * @return The value.
+     */
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * Parses a number that must be positive.
+     *
+     * @param option The option, for the error message.
+     * @param text   The value.
+     * @return The number.
+     */
+    private static long parsePositive(String option, String text) {
+        try {
+            long value = Long.parseLong(text.trim());
+            if (value <= 0) {
+                throw new IllegalArgumentException(option + " must be positive: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + text);
+        }
+    }
+
+    /**
+     * Parses a fraction of living cells.
+     *
+     * @param option The option, for the error message.
+     * @param text   The value.
+     * @return The fraction, between 0 and 1.
+     */
+    private static double parseDensity(String option, String text) {
+        try {
+            double value = Double.parseDouble(text.trim());
+            if (!(value >= 0 && value <= 1)) {
+                throw new IllegalArgumentException(option + " must be between 0 and 1: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + text);
+        }
+    }
+
+    /**
+     * Runs every selected benchmark over every size and density.
+     */
+    private void runAll() {
+        if (csv) {
+            System.out.println("benchmark,size,density,rule,ops/s,cells/s,bytes/op,alloc MB/s,gc count,gc ms");
+        } else {
+            System.out.printf("%-10s %6s %7s %-14s %12s %12s %12s %11s %5s %7s%n", "benchmark", "size",
+                    "density", "rule", "ops/s", "cells/s", "bytes/op", "alloc MB/s", "gcs", "gc ms");
+        }
+        for (String benchmark : benchmarks) {
+            for (int size : sizes) {
+                if (List.of("colour", "torus", "age", "render").contains(benchmark) && size > maxRender) {
+                    continue;
+                }
+                for (double density : densities) {
+                    if (benchmark.equals("step") || benchmark.equals("wide")) {
+                        for (Rule rule : rules) {
+                            runStep(benchmark, size, density, rule);
+                        }
+                    } else {
+                        run(benchmark, size, density);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a model holding a random soup.
+     *
+     * @param size    The width and height of the grid.
+     * @param density The fraction of living cells.
+     * @return The model.
+     */
+    private GameModel soup(int size, double density) {
+        GameModel model = new GameModel();
+        model.setRows(size);
+        model.setCols(size);
+        model.fillSoup(new Soup(seed, density));
+        return model;
+    }
+
+    /**
+     * Times stepping a soup by a rule, with the packed engine or its wide kernel.
+     *
+     * @param benchmark The name of the benchmark, step or wide.
+     * @param size      The width and height of the grid.
+     * @param density   The fraction of living cells.
+     * @param rule      The rule.
+     */
+    private void runStep(String benchmark, int size, double density, Rule rule) {
+        GameModel model = soup(size, density);
+        model.setRule(rule);
+        model.setEngine(benchmark.equals("wide") ? LifeEngine.WIDE : LifeEngine.PACKED);
+        Replay replay = new Replay(model);
+        measure(benchmark, size, density, rule, replay::restart, replay::beforeStep, model::applyRule);
+    }
+
+    /**
+     * Times a benchmark other than stepping on a soup.
+     *
+     * @param benchmark The name of the benchmark.
+     * @param size      The width and height of the grid.
+     * @param density   The fraction of living cells.
+     */
+    private void run(String benchmark, int size, double density) {
+        GameModel model = soup(size, density);
+        switch (benchmark) {
+            case "neighbours" -> measure(benchmark, size, density, null, null, null, () -> {
+                long total = 0;
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        total += model.checkNeighbours(i, j);
+                    }
+                }
+                sink = total;
+            });
+            case "fill" -> {
+                Soup soup = new Soup(seed, density);
+                measure(benchmark, size, density, null, null, null, () -> model.fillSoup(soup));
+            }
+            default -> {
+                GridCanvas canvas = canvas(benchmark, size);
+                paintable(benchmark, model);
+                BitGrid cells = model.getCells();
+                Replay replay = new Replay(model);
+                // every frame paints the cells changed by one generation, stepped outside the timing
+                measure(benchmark, size, density, null, () -> {
+                    replay.restart();
+                    canvas.render(cells);
+                }, () -> {
+                    replay.beforeStep();
+                    model.applyRule();
+                }, () -> canvas.render(cells));
+                verify(benchmark, size, density);
+            }
+        }
+    }
+
+    /**
+     * Sets a model up to step the way the game does while a benchmark paints it.
+     *
+     * @param benchmark The name of the benchmark, colour, torus, age or render.
+     * @param model     The model.
+     */
+    private static void paintable(String benchmark, GameModel model) {
+        // cells along an edge of a torus change the colour of cells along the opposite edge
+        if (benchmark.equals("torus")) {
+            model.setBoundary(Boundary.TORUS);
+        }
+        // the colour modes track neighbour counts and ages while stepping, as in the game
+        model.setTracking(!benchmark.equals("render"));
+    }
+
+    /**
+     * Creates a canvas painting a grid the way a benchmark does.
+     *
+     * @param benchmark The name of the benchmark, colour, torus, age or render.
+     * @param size      The width and height of the grid.
+     * @return The canvas.
+     */
+    private static GridCanvas canvas(String benchmark, int size) {
+        GridCanvas canvas = new GridCanvas(size, size, (size > SMALL_GRID) ? 1 : 4);
+        canvas.setMulticolour(benchmark.equals("colour") || benchmark.equals("torus"));
+        canvas.setAgeColour(benchmark.equals("age"));
+        return canvas;
+    }
+
+    /**
+     * Checks that the frames painted change by change from published snapshots, as in the game, are the frames
+     * a new canvas paints from scratch from the grid itself, so a benchmark cannot get faster by leaving cells
+     * unpainted. Stale cells are often painted over by a later change next to them, so every frame of a run from
+     * a new soup is compared, on small grids only.
+     *
+     * @param benchmark The name of the benchmark.
+     * @param size      The width and height of the grid.
+     * @param density   The fraction of living cells.
+     * @throws IllegalStateException If a frame differs.
+     */
+    private void verify(String benchmark, int size, double density) {
+        if (size > VERIFIED_SIZE) {
+            return;
+        }
+        GameModel model = soup(size, density);
+        paintable(benchmark, model);
+        BitGrid cells = model.getCells();
+        // the game paints the copies of the grid its simulation thread publishes, not the grid itself
+        Snapshot snapshot = new Snapshot(size, size);
+        GridCanvas painted = canvas(benchmark, size);
+        for (int generation = 0; generation <= VERIFIED_GENERATIONS; generation++) {
+            snapshot.capture(cells, generation, 0, 0);
+            painted.render(snapshot.getCells());
+            GridCanvas fresh = canvas(benchmark, size);
+            fresh.render(cells);
+            if (!Arrays.equals(pixels(painted), pixels(fresh))) {
+                throw new IllegalStateException("The " + benchmark + " benchmark painted generation " + generation
+                        + " of a " + size + "x" + size + " soup differently from a full repaint");
+            }
+            model.applyRule();
+        }
+    }
+
+    /**
+     * Paints a canvas into an image.
+     *
+     * @param canvas The canvas.
+     * @return The colour of every pixel, row by row.
+     */
+    private static int[] pixels(GridCanvas canvas) {
+        Dimension size = canvas.getPreferredSize();
+        canvas.setSize(size);
+        BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        canvas.paint(g);
+        g.dispose();
+        return image.getRGB(0, 0, size.width, size.height, null, 0, size.width);
+    }
+
+    /**
+     * Warms up and times an operation, then prints its throughput and allocations.
+     *
+     * @param benchmark The name of the benchmark.
+     * @param size      The width and height of the grid.
+     * @param density   The fraction of living cells.
+     * @param rule      The rule stepped, or {@code null} if the benchmark does not step.
+     * @param restart   Work done before the warm-up and before the timing to start from the same state, or
+     *                  {@code null}.
+     * @param prepare   Work done before every operation without being timed, or {@code null}.
+     * @param operation The operation timed.
+     */
+    private void measure(String benchmark, int size, double density, Rule rule, Operation restart,
+                         Operation prepare, Operation operation) {
+        if (restart != null) {
+            restart.run();
+        }
+        repeat(warmupNanos, prepare, operation);
+        if (restart != null) {
+            restart.run();
+        }
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long[] result = repeat(timeNanos, prepare, operation);
+        gcCount = gcCount() - gcCount;
+        gcMillis = gcMillis() - gcMillis;
+
+        long operations = result[0];
+        double seconds = result[1] / 1e9;
+        long allocated = result[2];
+        double opsPerSecond = operations / seconds;
+        double cellsPerSecond = opsPerSecond * size * size;
+        double bytesPerOp = (allocated < 0) ? Double.NaN : (double) allocated / operations;
+        double megabytesPerSecond = (allocated < 0) ? Double.NaN : allocated / seconds / (1 << 20);
+        String ruleName = (rule == null) ? "-" : rule.toString();
+        if (csv) {
+            System.out.printf(Locale.ROOT, "%s,%d,%.2f,%s,%.3f,%.4e,%.1f,%.3f,%d,%d%n", benchmark, size, density,
+                    ruleName, opsPerSecond, cellsPerSecond, bytesPerOp, megabytesPerSecond, gcCount, gcMillis);
+        } else {
+            System.out.printf(Locale.ROOT, "%-10s %6d %7.2f %-14s %12.1f %12.3e %12.1f %11.2f %5d %7d%n", benchmark,
+                    size, density, ruleName, opsPerSecond, cellsPerSecond, bytesPerOp, megabytesPerSecond,
+                    gcCount, gcMillis);
+        }
+    }
+
+    /**
+     * Repeats an operation until a time has elapsed, timing the operation and counting its allocations only.
+     *
+     * @param nanos     The time to spend in the operation.
+     * @param prepare   Work done before every operation without being timed, or {@code null}.
+     * @param operation The operation timed.
+     * @return The number of operations, the nanoseconds they took and the bytes they allocated, -1 if unknown.
+     */
+    private static long[] repeat(long nanos, Operation prepare, Operation operation) {
+        long operations = 0;
+        long elapsed = 0;
+        long allocated = 0;
+        while (elapsed < nanos || operations < MIN_OPERATIONS) {
+            if (prepare != null) {
+                prepare.run();
+            }
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            operation.run();
+            elapsed += System.nanoTime() - start;
+            allocated += allocatedBytes() - before;
+            operations++;
+        }
+        return new long[]{operations, elapsed, (allocatedBytes() < 0) ? -1 : allocated};
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread so far.
+     *
+     * @return The number of bytes, or -1 if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        return (THREADS == null) ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Finds the bean counting the bytes allocated by each thread.
+     *
+     * @return The bean, or {@code null} if the JVM cannot count allocations.
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of garbage collections so far.
+     *
+     * @return The number of collections.
+     */
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+    }
+
+    /**
+     * Gets the time spent in garbage collections so far.
+     *
+     * @return The number of milliseconds.
+     */
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+    }
+}
@@ -0,0 +1,1361 @@
+package engine;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Headless simulation engine that stores the universe as packed rows of bits, 64 cells per word.
+ * The next generation is computed for 64 cells at a time with bitwise full-adder logic, so the
+ * engine has no dependency on Swing and never touches individual cell objects.
+ * <p>
+ * The cells beyond the edges are dead, wrap around or mirror the edges, depending on the {@link Boundary}.
+ * Steps that evaluate every word first copy the generation into a buffer padded with a halo of one cell
+ * holding what lies beyond the edges, so the kernels read every neighbour from the same array without any
+ * bounds checks or edge cases.
+ */
+public class BitGrid {
+
+    /**
+     * Number of cells stored in a single word.
+     */
+    private static final int WORD_SIZE = 64;
+
+    /**
+     * Number of words below which a band of rows is stepped directly instead of being split further.
+     */
+    private static final int MIN_BAND_WORDS = 2048;
+
+    /**
+     * The number of rows in the universe.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns in the universe.
+     */
+    private final int cols;
+
+    /**
+     * The number of words used to store a single row.
+     */
+    private final int wordsPerRow;
+
+    /**
+     * Mask of the bits in the last word of a row that hold real cells.
+     */
+    private final long lastWordMask;
+
+    /**
+     * The current generation, stored row after row. Bit {@code c % 64} of word {@code c / 64} is column {@code c}.
+     */
+    private long[] cells;
+
+    /**
+     * Buffer the next generation is written into before the two buffers are swapped.
+     */
+    private long[] next;
+
+    /**
+     * What lies beyond the edges of the universe.
+     */
+    private Boundary boundary = Boundary.DEAD;
+
+    /**
+     * The number of words in a row of {@link #halo}: the words of a row of cells and one on either side.
+     */
+    private final int haloStride;
+
+    /**
+     * The current generation surrounded by a halo of one cell, refreshed before every step that evaluates
+     * every word, or {@code null} until the first one. Row {@code r} of the cells is row {@code r + 1} of the
+     * halo, the row above and below hold the cells beyond the top and bottom edges, and every row holds the
+     * cell beyond the left edge in the top bit of the word before the cells and the cell beyond the right edge
+     * in the first bit after the last column.
+     */
+    private long[] halo;
+
+    /**
+     * The pool the generations are computed on in bands of rows, or {@code null} to step on the calling thread.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * A flag indicating whether only the neighbourhoods of words that changed are evaluated.
+     */
+    private boolean incremental;
+
+    /**
+     * Indices of the words that changed in the last generation or were edited since. May hold duplicates.
+     */
+    private final int[] changedWords;
+
+    /**
+     * The number of entries in {@link #changedWords}.
+     */
+    private int changedCount;
+
+    /**
+     * A flag indicating whether every word has to be evaluated on the next step, because the change list
+     * overflowed, the grid was cleared or the rule changed.
+     */
+    private boolean allChanged = true;
+
+    /**
+     * The rule the last generation was computed with.
+     */
+    private Rule lastRule;
+
+    /**
+     * One bit per word, set while the word is queued for evaluation.
+     */
+    private final long[] queuedBits;
+
+    /**
+     * Indices of the words queued for evaluation.
+     */
+    private final int[] queuedWords;
+
+    /**
+     * One bit per word, set for words that changed since the view last took the dirty set.
+     */
+    private long[] dirtyBits;
+
+    /**
+     * Cleared bitset swapped with {@link #dirtyBits} when the view takes the dirty set.
+     */
+    private long[] spareDirtyBits;
+
+    /**
+     * A flag indicating whether every word may have changed since the view last took the dirty set.
+     */
+    private boolean allDirty = true;
+
+    /**
+     * Hash of the current generation, the XOR of {@link #hashWord(int, long)} over every word. It is updated
+     * with every word that changes, so it costs nothing for the words that stay the same.
+     */
+    private long hash;
+
+    /**
+     * The number of living cells, updated with every word that changes.
+     */
+    private long population;
+
+    /**
+     * The number of cells born in steps since the grid was created.
+     */
+    private long births;
+
+    /**
+     * The number of cells that died in steps since the grid was created.
+     */
+    private long deaths;
+
+    /**
+     * The number of living neighbours of every cell, row after row, or {@code null} while not tracking.
+     */
+    private byte[] neighbours;
+
+    /**
+     * The step every living cell was born in, row after row, or {@code null} while not tracking.
+     */
+    private int[] birthSteps;
+
+    /**
+     * The number of generations stepped since the grid was created.
+     */
+    private int steps;
+
+    /**
+     * The number of words evaluated since the grid was created.
+     */
+    private long evaluatedWords;
+
+    /**
+     * The number of words skipped by incremental steps since the grid was created.
+     */
+    private long skippedWords;
+
+    /**
+     * The neighbour counts of a row for the wide kernel when it steps on the calling thread, allocated on
+     * first use.
+     */
+    private long[][] rowCounts;
+
+    /**
+     * Constructs an empty universe of the given size.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     */
+    public BitGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.wordsPerRow = (cols + WORD_SIZE - 1) / WORD_SIZE;
+        int tail = cols % WORD_SIZE;
+        this.lastWordMask = (tail == 0) ? -1L : (1L << tail) - 1;
+        this.haloStride = wordsPerRow + 2;
+        this.cells = new long[rows * wordsPerRow];
+        this.next = new long[rows * wordsPerRow];
+        this.changedWords = new int[rows * wordsPerRow];
+        this.queuedWords = new int[rows * wordsPerRow];
+        this.queuedBits = new long[(rows * wordsPerRow + 63) >>> 6];
+        this.dirtyBits = new long[queuedBits.length];
+        this.spareDirtyBits = new long[queuedBits.length];
+    }
+
+    /**
+     * Gets the number of rows in the universe.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns in the universe.
+     *
+     * @return The number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Gets the number of words used to store a single row.
+     *
+     * @return The number of words per row.
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Gets the packed cells of the current generation. The array is owned by the grid and must not be modified.
+     *
+     * @return The packed cells, row after row.
+     */
+    public long[] getWords() {
+        return cells;
+    }
+
+    /**
+     * Checks whether a cell is alive.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return {@code true} if the cell is alive.
+     */
+    public boolean get(int row, int col) {
+        return (cells[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Sets a cell to alive or dead.
+     *
+     * @param row   The row of the cell.
+     * @param col   The column of the cell.
+     * @param alive Whether the cell should be alive.
+     */
+    public void set(int row, int col, boolean alive) {
+        int index = row * wordsPerRow + (col >>> 6);
+        long old = cells[index];
+        if (alive) {
+            cells[index] |= 1L << col;
+        } else {
+            cells[index] &= ~(1L << col);
+        }
+        hash ^= hashWord(index, old) ^ hashWord(index, cells[index]);
+        population += Long.bitCount(cells[index]) - Long.bitCount(old);
+        track(index, old, cells[index]);
+        markChanged(index);
+    }
+
+    /**
+     * Replaces a whole word of cells. Bits beyond the last column must be clear.
+     *
+     * @param row  The row of the word.
+     * @param word The index of the word within the row, covering columns {@code 64 * word} onwards.
+     * @param bits The cells, bit {@code c} for column {@code 64 * word + c}.
+     */
+    public void setWord(int row, int word, long bits) {
+        int index = row * wordsPerRow + word;
+        if (cells[index] != bits) {
+            hash ^= hashWord(index, cells[index]) ^ hashWord(index, bits);
+            population += Long.bitCount(bits) - Long.bitCount(cells[index]);
+            track(index, cells[index], bits);
+            cells[index] = bits;
+            markChanged(index);
+        }
+    }
+
+    /**
+     * Replaces the cells with a later generation computed outside the grid, such as by HashLife. Only the words
+     * that differ are written, the cells that differ count as births and deaths, and while tracking, cells alive
+     * in both generations keep their age while the others age by the generations in between.
+     *
+     * @param words       The cells of the later generation, laid out as in {@link #getWords()}; bits beyond
+     *                    the last column must be clear.
+     * @param generations The number of generations from the current one to the later one.
+     */
+    public void advanceTo(long[] words, long generations) {
+        // ages saturate rather than wrap after 2^31 generations
+        steps = (int) Math.min(Integer.MAX_VALUE, steps + generations);
+        for (int index = 0; index < cells.length; index++) {
+            if (cells[index] != words[index]) {
+                hash ^= hashWord(index, cells[index]) ^ hashWord(index, words[index]);
+                count(cells[index], words[index]);
+                track(index, cells[index], words[index]);
+                cells[index] = words[index];
+                markChanged(index);
+            }
+        }
+    }
+
+    /**
+     * Brings a run of cells on a row to life, a whole word at a time. Cells beyond the last column are ignored.
+     *
+     * @param row    The row of the run.
+     * @param col    The column of the first cell.
+     * @param length The number of cells.
+     */
+    public void setRun(int row, int col, int length) {
+        int end = (int) Math.min(cols, (long) col + length);
+        for (int start = col; start < end; start = (start | 63) + 1) {
+            int index = row * wordsPerRow + (start >>> 6);
+            int hi = Math.min(end - (start & ~63), WORD_SIZE);
+            long mask = (-1L << start) & ((hi == WORD_SIZE) ? -1L : (1L << hi) - 1);
+            long bits = cells[index] | mask;
+            if (cells[index] != bits) {
+                hash ^= hashWord(index, cells[index]) ^ hashWord(index, bits);
+                population += Long.bitCount(bits) - Long.bitCount(cells[index]);
+                track(index, cells[index], bits);
+                cells[index] = bits;
+                markChanged(index);
+            }
+        }
+    }
+
+    /**
+     * Kills every cell in the universe.
+     */
+    public void clear() {
+        Arrays.fill(cells, 0L);
+        hash = 0;
+        population = 0;
+        if (neighbours != null) {
+            Arrays.fill(neighbours, (byte) 0);
+        }
+        allChanged = true;
+        allDirty = true;
+    }
+
+    /**
+     * Replaces the cells with a copy of another grid of the same size, along with what lies beyond its edges.
+     * The words the other grid reports as changed are added to the dirty set of this grid, and its neighbour
+     * counts and ages are copied if it tracks them.
+     *
+     * @param source The grid to copy.
+     */
+    public void copyFrom(BitGrid source) {
+        System.arraycopy(source.cells, 0, cells, 0, cells.length);
+        // the copy is only read, so its halo is never needed and the boundary is taken as is
+        boundary = source.boundary;
+        hash = source.hash;
+        population = source.population;
+        births = source.births;
+        deaths = source.deaths;
+        steps = source.steps;
+        if (source.neighbours == null) {
+            neighbours = null;
+            birthSteps = null;
+        } else {
+            if (neighbours == null) {
+                neighbours = new byte[source.neighbours.length];
+                birthSteps = new int[source.birthSteps.length];
+            }
+            System.arraycopy(source.neighbours, 0, neighbours, 0, neighbours.length);
+            System.arraycopy(source.birthSteps, 0, birthSteps, 0, birthSteps.length);
+        }
+        allChanged = true;
+        long[] dirty = source.takeDirtyWords();
+        if (dirty == null) {
+            allDirty = true;
+        } else {
+            for (int i = 0; i < dirtyBits.length; i++) {
+                dirtyBits[i] |= dirty[i];
+            }
+        }
+    }
+
+    /**
+     * Replaces a range of words with the words remaining in a buffer, in the order of {@link #getWords()}.
+     * The words are moved in bulk, so a memory-mapped buffer is copied at memory speed.
+     *
+     * @param from   The index of the first word to replace.
+     * @param source The words; the buffer is consumed.
+     */
+    public void readWords(int from, LongBuffer source) {
+        int to = from + source.remaining();
+        for (int index = from; index < to; index++) {
+            if (cells[index] != 0) {
+                hash ^= hashWord(index, cells[index]);
+                population -= Long.bitCount(cells[index]);
+            }
+        }
+        source.get(cells, from, to - from);
+        for (int index = from; index < to; index++) {
+            if (index % wordsPerRow == wordsPerRow - 1) {
+                cells[index] &= lastWordMask;
+            }
+            hash ^= hashWord(index, cells[index]);
+            population += Long.bitCount(cells[index]);
+        }
+        if (neighbours != null) {
+            rebuildTracking();
+        }
+        allChanged = true;
+        allDirty = true;
+    }
+
+    /**
+     * Copies a range of words into a buffer, in the order of {@link #getWords()}.
+     *
+     * @param from   The index of the first word to copy.
+     * @param target The buffer, filled up to its limit.
+     */
+    public void writeWords(int from, LongBuffer target) {
+        target.put(cells, from, target.remaining());
+    }
+
+    /**
+     * Adds the dirty set of another grid of the same size to the dirty set of this grid, without taking it.
+     *
+     * @param other The grid whose changes still have to be repainted.
+     */
+    public void mergeDirty(BitGrid other) {
+        if (other.allDirty || other.dirtyBits.length != dirtyBits.length) {
+            allDirty = true;
+        } else {
+            for (int i = 0; i < dirtyBits.length; i++) {
+                dirtyBits[i] |= other.dirtyBits[i];
+            }
+        }
+    }
+
+    /**
+     * Records an edited word, so the next incremental step evaluates its neighbourhood and the view repaints it.
+     *
+     * @param index The index of the word.
+     */
+    private void markChanged(int index) {
+        dirtyBits[index >>> 6] |= 1L << index;
+        if (allChanged || (changedCount > 0 && changedWords[changedCount - 1] == index)) {
+            return;
+        }
+        if (changedCount == changedWords.length) {
+            allChanged = true;
+        } else {
+            changedWords[changedCount++] = index;
+        }
+    }
+
+    /**
+     * Enables or disables incremental stepping. When enabled, a step only evaluates the words around the
+     * words that changed in the previous generation; every other word is known to stay the same.
+     *
+     * @param incremental Whether to step incrementally.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Checks whether incremental stepping is enabled.
+     *
+     * @return {@code true} if only the neighbourhoods of changed words are evaluated.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Sets what lies beyond the edges of the universe, from the next step on. Neighbour counts are recounted
+     * while tracking; ages are kept.
+     *
+     * @param boundary The boundary.
+     */
+    public void setBoundary(Boundary boundary) {
+        this.boundary = boundary;
+        allChanged = true;
+        if (neighbours != null) {
+            int[] ages = birthSteps.clone();
+            rebuildTracking();
+            System.arraycopy(ages, 0, birthSteps, 0, ages.length);
+            // the counts change along the edges, and with them the colours of the cells
+            allDirty = true;
+        }
+    }
+
+    /**
+     * Gets what lies beyond the edges of the universe.
+     *
+     * @return The boundary.
+     */
+    public Boundary getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * Maps a row or column up to one cell beyond the edges to the cell it shows.
+     *
+     * @param i    The row or column, from -1 to {@code size}.
+     * @param size The number of rows or columns.
+     * @return The row or column inside the universe, or -1 for a dead cell beyond a dead edge.
+     */
+    private int inside(int i, int size) {
+        if (i >= 0 && i < size) {
+            return i;
+        }
+        if (boundary == Boundary.DEAD) {
+            return -1;
+        }
+        return ((i < 0) == (boundary == Boundary.TORUS)) ? size - 1 : 0;
+    }
+
+    /**
+     * Enables or disables tracking the number of living neighbours and the age of every cell. While enabled,
+     * every change to a word adds or removes the flipped cells from the counts of their neighbours, so the
+     * counts cost in proportion to the cells that change and are always up to date. Cells alive when tracking
+     * starts count their age from then.
+     *
+     * @param tracking Whether to track neighbour counts and ages.
+     */
+    public void setTracking(boolean tracking) {
+        if (!tracking) {
+            neighbours = null;
+            birthSteps = null;
+        } else if (neighbours == null) {
+            neighbours = new byte[rows * cols];
+            birthSteps = new int[rows * cols];
+            rebuildTracking();
+        }
+    }
+
+    /**
+     * Checks whether neighbour counts and ages are tracked.
+     *
+     * @return {@code true} if every change updates the neighbour counts and ages.
+     */
+    public boolean isTracking() {
+        return neighbours != null;
+    }
+
+    /**
+     * Gets the number of living neighbours of every cell, maintained while tracking. Cell {@code (r, c)} is at
+     * index {@code r * cols + c}. The array is owned by the grid and must not be modified.
+     *
+     * @return The neighbour counts, or {@code null} while not tracking.
+     */
+    public byte[] getNeighbourCounts() {
+        return neighbours;
+    }
+
+    /**
+     * Gets the number of generations a living cell has been alive for, while tracking.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The age of the cell, 0 in the generation it was born in or while not tracking.
+     */
+    public int getAge(int row, int col) {
+        return (birthSteps == null) ? 0 : steps - birthSteps[row * cols + col];
+    }
+
+    /**
+     * Recomputes the neighbour counts from the cells and makes every living cell newborn.
+     */
+    private void rebuildTracking() {
+        Arrays.fill(neighbours, (byte) 0);
+        for (int index = 0; index < cells.length; index++) {
+            track(index, 0, cells[index]);
+        }
+    }
+
+    /**
+     * Updates the neighbour counts and ages for the cells that flipped in a word, while tracking.
+     *
+     * @param index  The index of the word.
+     * @param before The cells of the word before the change.
+     * @param after  The cells of the word after the change.
+     */
+    private void track(int index, long before, long after) {
+        if (neighbours == null) {
+            return;
+        }
+        int row = index / wordsPerRow;
+        int first = (index % wordsPerRow) * WORD_SIZE;
+        int top = Math.max(0, row - 1);
+        int bottom = Math.min(row + 1, rows - 1);
+        for (long flipped = before ^ after; flipped != 0; flipped &= flipped - 1) {
+            int bit = Long.numberOfTrailingZeros(flipped);
+            int col = first + bit;
+            boolean born = (after & (1L << bit)) != 0;
+            byte delta = born ? (byte) 1 : (byte) -1;
+            int left = Math.max(0, col - 1);
+            int right = Math.min(col + 1, cols - 1);
+            for (int r = top; r <= bottom; r++) {
+                for (int c = left; c <= right; c++) {
+                    neighbours[r * cols + c] += delta;
+                }
+            }
+            // the loops above counted the cell as its own neighbour
+            neighbours[row * cols + col] -= delta;
+            if (boundary != Boundary.DEAD && (row == 0 || row == rows - 1 || col == 0 || col == cols - 1)) {
+                trackImages(row, col, delta);
+            }
+            if (born) {
+                birthSteps[row * cols + col] = steps;
+            }
+        }
+    }
+
+    /**
+     * Updates the neighbour counts of the cells next to the images of an edge cell beyond the edges, which
+     * wrap around or mirror it.
+     *
+     * @param row   The row of the cell.
+     * @param col   The column of the cell.
+     * @param delta 1 if the cell was born, -1 if it died.
+     */
+    private void trackImages(int row, int col, byte delta) {
+        // an image is the cell itself, or a row or column beyond the edges that shows the cell
+        for (int i = 0; i < 3; i++) {
+            int imageRow = (i == 0) ? row : (i == 1) ? -1 : rows;
+            if (i > 0 && inside(imageRow, rows) != row) {
+                continue;
+            }
+            for (int j = 0; j < 3; j++) {
+                int imageCol = (j == 0) ? col : (j == 1) ? -1 : cols;
+                if ((i == 0 && j == 0) || (j > 0 && inside(imageCol, cols) != col)) {
+                    continue;
+                }
+                for (int r = Math.max(0, imageRow - 1); r <= Math.min(imageRow + 1, rows - 1); r++) {
+                    for (int c = Math.max(0, imageCol - 1); c <= Math.min(imageCol + 1, cols - 1); c++) {
+                        neighbours[r * cols + c] += delta;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of cells evaluated since the grid was created, counted in whole words of 64 cells.
+     *
+     * @return The number of evaluated cells.
+     */
+    public long getEvaluatedCells() {
+        return evaluatedWords * WORD_SIZE;
+    }
+
+    /**
+     * Gets the number of cells incremental steps skipped since the grid was created, counted in whole words
+     * of 64 cells.
+     *
+     * @return The number of skipped cells.
+     */
+    public long getSkippedCells() {
+        return skippedWords * WORD_SIZE;
+    }
+
+    /**
+     * Takes the set of words that changed since the last call, so a view only repaints those. The returned
+     * bitset holds one bit per word, in the order of {@link #getWords()}, and stays valid until the next call.
+     *
+     * @return The changed words, or {@code null} if any word may have changed.
+     */
+    public long[] takeDirtyWords() {
+        long[] dirty = dirtyBits;
+        Arrays.fill(spareDirtyBits, 0L);
+        dirtyBits = spareDirtyBits;
+        spareDirtyBits = dirty;
+        if (allDirty) {
+            allDirty = false;
+            return null;
+        }
+        return dirty;
+    }
+
+    /**
+     * Gets a hash of the current generation. Equal generations of grids of the same size have equal hashes,
+     * and an empty grid hashes to 0.
+     *
+     * @return The hash.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Hashes a range of words laid out as in {@link #getWords()}, the way {@link #getHash()} hashes the words of
+     * a grid, without reading them into one. The hashes of separate ranges combine with xor, so words can be
+     * checked against the hash of a generation before they are loaded. The unused bits of the last word of every
+     * row are ignored, as {@link #readWords(int, LongBuffer)} clears them.
+     *
+     * @param cols  The number of columns of the grid.
+     * @param from  The index of the first word.
+     * @param words The words, from their position to their limit; the buffer is not consumed.
+     * @return The hash of the words.
+     */
+    public static long hashWords(int cols, int from, LongBuffer words) {
+        int wordsPerRow = Math.max(1, (cols + 63) >>> 6);
+        int tail = cols & 63;
+        long lastWordMask = (tail == 0) ? -1L : (1L << tail) - 1;
+        long hash = 0;
+        int start = words.position();
+        for (int i = 0; i < words.remaining(); i++) {
+            int index = from + i;
+            long word = words.get(start + i);
+            if (index % wordsPerRow == wordsPerRow - 1) {
+                word &= lastWordMask;
+            }
+            hash ^= hashWord(index, word);
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes a single word of cells together with its position.
+     *
+     * @param index The index of the word.
+     * @param word  The cells of the word.
+     * @return The hash of the word, 0 if every cell is dead.
+     */
+    private static long hashWord(int index, long word) {
+        if (word == 0) {
+            return 0;
+        }
+        // splitmix64 finalizer
+        long h = word + (index + 1) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Counts the living cells in the universe. The count is kept up to date as the cells change.
+     *
+     * @return The population.
+     */
+    public long population() {
+        return population;
+    }
+
+    /**
+     * Gets the number of cells born in the generations stepped since the grid was created. Edits and other
+     * engines replacing the cells are not counted.
+     *
+     * @return The number of births.
+     */
+    public long getBirths() {
+        return births;
+    }
+
+    /**
+     * Gets the number of cells that died in the generations stepped since the grid was created. Edits and
+     * other engines replacing the cells are not counted.
+     *
+     * @return The number of deaths.
+     */
+    public long getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * Counts the births and deaths of a word that changed in a step, and updates the population.
+     *
+     * @param before The cells of the word in the current generation.
+     * @param after  The cells of the word in the next generation.
+     */
+    private void count(long before, long after) {
+        int born = Long.bitCount(after & ~before);
+        int died = Long.bitCount(before & ~after);
+        births += born;
+        deaths += died;
+        population += born - died;
+    }
+
+    /**
+     * Counts the living neighbours of a single cell, beyond the edges as the boundary has them.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The number of living neighbours.
+     */
+    public int countNeighbours(int row, int col) {
+        int aliveNeighbours = 0;
+        for (int i = row - 1; i <= row + 1; i++) {
+            for (int j = col - 1; j <= col + 1; j++) {
+                int r = inside(i, rows);
+                int c = inside(j, cols);
+                if (r >= 0 && c >= 0 && get(r, c)) {
+                    aliveNeighbours++;
+                }
+            }
+        }
+        // the loops above counted the cell as its own neighbour
+        return get(row, col) ? aliveNeighbours - 1 : aliveNeighbours;
+    }
+
+    /**
+     * Sets the pool used to compute generations in parallel. Every band of rows reads the current generation
+     * and writes its own rows of the second buffer, so the bands need no locking.
+     *
+     * @param pool The pool to step on, or {@code null} to step on the calling thread.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the pool used to compute generations in parallel.
+     *
+     * @return The pool, or {@code null} if generations are computed on the calling thread.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Computes the next generation.
+     *
+     * @param rule The compiled rule to apply.
+     */
+    public void step(Rule rule) {
+        step(rule, false);
+    }
+
+    /**
+     * Computes the next generation, evaluating whole rows with the wide kernel when every word is evaluated.
+     * The kernel sums the neighbour counts of a row in one pass and matches them against the rule in
+     * another, both straight loops over the words of the row without the rule branches of a word at a time,
+     * which steps large grids about 1.7 times as fast. Incremental steps
+     * evaluate scattered words and are unchanged.
+     *
+     * @param rule The compiled rule to apply.
+     */
+    public void stepWide(Rule rule) {
+        step(rule, true);
+    }
+
+    /**
+     * Computes the next generation.
+     *
+     * @param rule The compiled rule to apply.
+     * @param wide Whether full steps use the wide kernel.
+     */
+    private void step(Rule rule, boolean wide) {
+        int birthMask = rule.getBirthMask();
+        int surviveMask = rule.getSurviveMask();
+        int words = cells.length;
+        // a large change list costs more to follow than stepping every word
+        boolean full = !incremental || allChanged || !rule.equals(lastRule) || changedCount > words / 8;
+        lastRule = rule;
+        steps++;
+        if (full) {
+            if (halo == null) {
+                halo = new long[(rows + 2) * haloStride];
+            }
+            if (pool == null || words <= MIN_BAND_WORDS) {
+                if (wide && rowCounts == null) {
+                    rowCounts = new long[4][wordsPerRow];
+                }
+                refreshHalo(0, rows);
+                stepRows(0, rows, birthMask, surviveMask, wide ? rowCounts : null);
+            } else {
+                // every band reads the halo rows of its neighbours, so the halo is complete before any is stepped
+                pool.invoke(new BandTask(0, rows, birthMask, surviveMask, wide, true));
+                pool.invoke(new BandTask(0, rows, birthMask, surviveMask, wide, false));
+            }
+            evaluatedWords += words;
+            changedCount = 0;
+            for (int index = 0; index < words; index++) {
+                if (next[index] != cells[index]) {
+                    hash ^= hashWord(index, cells[index]) ^ hashWord(index, next[index]);
+                    count(cells[index], next[index]);
+                    track(index, cells[index], next[index]);
+                    changedWords[changedCount++] = index;
+                    dirtyBits[index >>> 6] |= 1L << index;
+                }
+            }
+        } else {
+            int queued = queueNeighbourhoods();
+            // the words that are not evaluated did not change in the last generation, so the second buffer
+            // still holds their current state
+            for (int i = 0; i < queued; i++) {
+                int index = queuedWords[i];
+                next[index] = evolveWord(index / wordsPerRow, index % wordsPerRow, birthMask, surviveMask);
+            }
+            evaluatedWords += queued;
+            skippedWords += words - queued;
+            changedCount = 0;
+            for (int i = 0; i < queued; i++) {
+                int index = queuedWords[i];
+                queuedBits[index >>> 6] &= ~(1L << index);
+                if (next[index] != cells[index]) {
+                    hash ^= hashWord(index, cells[index]) ^ hashWord(index, next[index]);
+                    count(cells[index], next[index]);
+                    track(index, cells[index], next[index]);
+                    changedWords[changedCount++] = index;
+                    dirtyBits[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        allChanged = false;
+        long[] swap = cells;
+        cells = next;
+        next = swap;
+    }
+
+    /**
+     * Queues every word around a changed word for evaluation, each word once.
+     *
+     * @return The number of queued words.
+     */
+    private int queueNeighbourhoods() {
+        if (boundary == Boundary.TORUS) {
+            return queueWrappedNeighbourhoods();
+        }
+        // a mirrored edge only shows the cells on the edge itself, so the neighbourhoods end at the edges
+        int queued = 0;
+        for (int i = 0; i < changedCount; i++) {
+            int r = changedWords[i] / wordsPerRow;
+            int w = changedWords[i] % wordsPerRow;
+            for (int dr = Math.max(0, r - 1); dr <= Math.min(r + 1, rows - 1); dr++) {
+                for (int dw = Math.max(0, w - 1); dw <= Math.min(w + 1, wordsPerRow - 1); dw++) {
+                    int index = dr * wordsPerRow + dw;
+                    if ((queuedBits[index >>> 6] & (1L << index)) == 0) {
+                        queuedBits[index >>> 6] |= 1L << index;
+                        queuedWords[queued++] = index;
+                    }
+                }
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Queues every word around a changed word for evaluation, each word once, the neighbourhoods wrapping
+     * around the edges of the torus.
+     *
+     * @return The number of queued words.
+     */
+    private int queueWrappedNeighbourhoods() {
+        int queued = 0;
+        for (int i = 0; i < changedCount; i++) {
+            int r = changedWords[i] / wordsPerRow;
+            int w = changedWords[i] % wordsPerRow;
+            for (int dr = r - 1; dr <= r + 1; dr++) {
+                int row = Math.floorMod(dr, rows);
+                for (int dw = w - 1; dw <= w + 1; dw++) {
+                    int index = row * wordsPerRow + Math.floorMod(dw, wordsPerRow);
+                    if ((queuedBits[index >>> 6] & (1L << index)) == 0) {
+                        queuedBits[index >>> 6] |= 1L << index;
+                        queuedWords[queued++] = index;
+                    }
+                }
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Copies a band of rows of the current generation into the halo buffer, along with the cells beyond the
+     * left and right edges, and the rows beyond the top and bottom edges if the band reaches them.
+     *
+     * @param from The first row of the band.
+     * @param to   The row after the last row of the band.
+     */
+    private void refreshHalo(int from, int to) {
+        if (cells.length == 0) {
+            return;
+        }
+        for (int r = from; r < to; r++) {
+            haloRow(r, r + 1);
+        }
+        if (from == 0) {
+            haloRow(inside(-1, rows), 0);
+        }
+        if (to == rows) {
+            haloRow(inside(rows, rows), rows + 1);
+        }
+    }
+
+    /**
+     * Copies a row of the current generation into a row of the halo buffer, with the cells beyond its left and
+     * right edges.
+     *
+     * @param source The row of the cells, or -1 for a row of dead cells.
+     * @param target The row of the halo buffer.
+     */
+    private void haloRow(int source, int target) {
+        int to = target * haloStride;
+        if (source < 0) {
+            Arrays.fill(halo, to, to + haloStride, 0L);
+            return;
+        }
+        int from = source * wordsPerRow;
+        System.arraycopy(cells, from, halo, to + 1, wordsPerRow);
+        halo[to] = edgeCell(from, inside(-1, cols)) << 63;
+        // the cell beyond the right edge follows the last column, in the last word or the word after it
+        long right = edgeCell(from, inside(cols, cols));
+        if (lastWordMask == -1L) {
+            halo[to + wordsPerRow + 1] = right;
+        } else {
+            halo[to + wordsPerRow] |= right << cols;
+            halo[to + wordsPerRow + 1] = 0;
+        }
+    }
+
+    /**
+     * Reads a cell of a row for the halo.
+     *
+     * @param from The index of the first word of the row.
+     * @param col  The column of the cell, or -1 for a dead cell.
+     * @return 1 if the cell is alive, 0 otherwise.
+     */
+    private long edgeCell(int from, int col) {
+        return (col < 0) ? 0 : (cells[from + (col >>> 6)] >>> col) & 1;
+    }
+
+    /**
+     * Computes the next generation of a band of rows into the second buffer, from the halo buffer.
+     *
+     * @param from        The first row of the band.
+     * @param to          The row after the last row of the band.
+     * @param birthMask   Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     * @param surviveMask Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     * @param counts      Four rows of scratch space to evaluate whole rows with the wide kernel, or
+     *                    {@code null} to evaluate a word at a time.
+     */
+    private void stepRows(int from, int to, int birthMask, int surviveMask, long[][] counts) {
+        if (wordsPerRow == 0) {
+            return;
+        }
+        if (counts != null) {
+            stepRowsWide(from, to, birthMask, surviveMask, counts);
+            return;
+        }
+        long[] halo = this.halo;
+        for (int r = from; r < to; r++) {
+            int up = r * haloStride + 1;
+            int mid = up + haloStride;
+            int down = mid + haloStride;
+            int out = r * wordsPerRow;
+            for (int w = 0; w < wordsPerRow; w++) {
+                next[out + w] = evolve(halo[up + w - 1], halo[up + w], halo[up + w + 1],
+                        halo[mid + w - 1], halo[mid + w], halo[mid + w + 1],
+                        halo[down + w - 1], halo[down + w], halo[down + w + 1], birthMask, surviveMask);
+            }
+            next[out + wordsPerRow - 1] &= lastWordMask;
+        }
+    }
+
+    /**
+     * Computes the next state of a band of rows with the wide kernel, from the halo buffer.
+     *
+     * @param from        The first row of the band.
+     * @param to          The row after the last row of the band.
+     * @param birthMask   Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     * @param surviveMask Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     * @param counts      Receives the four bits of the neighbour count of every cell of a row.
+     */
+    private void stepRowsWide(int from, int to, int birthMask, int surviveMask, long[][] counts) {
+        long[] ones = counts[0];
+        long[] twos = counts[1];
+        long[] fours = counts[2];
+        long[] eights = counts[3];
+        for (int r = from; r < to; r++) {
+            int up = r * haloStride + 1;
+            int mid = up + haloStride;
+            int out = r * wordsPerRow;
+            countRow(halo, up, mid, mid + haloStride, wordsPerRow, ones, twos, fours, eights);
+            matchRow(halo, mid, next, out, wordsPerRow, ones, twos, fours, eights, birthMask, surviveMask);
+            next[out + wordsPerRow - 1] &= lastWordMask;
+        }
+    }
+
+    /**
+     * Sums the eight neighbours of every cell of a row into bit-sliced 4-bit counts, with the full adders of
+     * {@link #evolve}.
+     *
+     * @param cells  The current generation with its halo.
+     * @param up     The index of the first word of the row above.
+     * @param mid    The index of the first word of the row.
+     * @param down   The index of the first word of the row below.
+     * @param words  The number of words in a row.
+     * @param ones   Receives the ones bit of the counts.
+     * @param twos   Receives the twos bit of the counts.
+     * @param fours  Receives the fours bit of the counts.
+     * @param eights Receives the eights bit of the counts.
+     */
+    private static void countRow(long[] cells, int up, int mid, int down, int words,
+                                 long[] ones, long[] twos, long[] fours, long[] eights) {
+        for (int w = 0; w < words; w++) {
+            long a = cells[up + w];
+            long m = cells[mid + w];
+            long b = cells[down + w];
+            long n0 = (a << 1) | (cells[up + w - 1] >>> 63);
+            long n2 = (a >>> 1) | (cells[up + w + 1] << 63);
+            long n3 = (m << 1) | (cells[mid + w - 1] >>> 63);
+            long n4 = (m >>> 1) | (cells[mid + w + 1] << 63);
+            long n5 = (b << 1) | (cells[down + w - 1] >>> 63);
+            long n7 = (b >>> 1) | (cells[down + w + 1] << 63);
+
+            long x1 = n0 ^ a;
+            long s1 = x1 ^ n2;
+            long c1 = (n0 & a) | (x1 & n2);
+            long x2 = n3 ^ n4;
+            long s2 = x2 ^ n5;
+            long c2 = (n3 & n4) | (x2 & n5);
+            long s3 = b ^ n7;
+            long c3 = b & n7;
+            long x4 = s1 ^ s2;
+            long c4 = (s1 & s2) | (x4 & s3);
+            long x5 = c1 ^ c2;
+            long t = x5 ^ c3;
+            long c5 = (c1 & c2) | (x5 & c3);
+            long c6 = t & c4;
+            ones[w] = x4 ^ s3;
+            twos[w] = t ^ c4;
+            fours[w] = c5 ^ c6;
+            eights[w] = c5 & c6;
+        }
+    }
+
+    /**
+     * Matches the neighbour counts of a row against the rule, one pass per neighbour count the rule uses.
+     * Every pass is a straight loop over the words, with the count and the rule folded into masks outside
+     * of it.
+     *
+     * @param cells       The current generation with its halo.
+     * @param mid         The index of the first word of the row in the current generation.
+     * @param next        Receives the next generation.
+     * @param out         The index of the first word of the row in the next generation.
+     * @param words       The number of words in a row.
+     * @param ones        The ones bit of the counts.
+     * @param twos        The twos bit of the counts.
+     * @param fours       The fours bit of the counts.
+     * @param eights      The eights bit of the counts.
+     * @param birthMask   Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     * @param surviveMask Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     */
+    private static void matchRow(long[] cells, int mid, long[] next, int out, int words, long[] ones,
+                                 long[] twos, long[] fours, long[] eights, int birthMask, int surviveMask) {
+        Arrays.fill(next, out, out + words, 0L);
+        int used = birthMask | surviveMask;
+        for (int n = 0; n <= 8; n++) {
+            if ((used & (1 << n)) == 0) {
+                continue;
+            }
+            // a count bit that must be clear is flipped, so every matching cell has all four bits set
+            long flip0 = ((n & 1) != 0) ? 0 : -1L;
+            long flip1 = ((n & 2) != 0) ? 0 : -1L;
+            long flip2 = ((n & 4) != 0) ? 0 : -1L;
+            long flip3 = ((n & 8) != 0) ? 0 : -1L;
+            long born = ((birthMask & (1 << n)) != 0) ? -1L : 0;
+            long survive = ((surviveMask & (1 << n)) != 0) ? -1L : 0;
+            for (int w = 0; w < words; w++) {
+                long m = cells[mid + w];
+                next[out + w] |= (ones[w] ^ flip0) & (twos[w] ^ flip1) & (fours[w] ^ flip2)
+                        & (eights[w] ^ flip3) & ((m & survive) | (~m & born));
+            }
+        }
+    }
+
+    /**
+     * Computes the next state of a single word of the current generation, for incremental steps, which only
+     * evaluate the words around the changes and read them from the cells rather than from the halo buffer.
+     *
+     * @param r           The row of the word.
+     * @param w           The index of the word within the row.
+     * @param birthMask   Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     * @param surviveMask Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     * @return The next state of the 64 cells of the word.
+     */
+    private long evolveWord(int r, int w, int birthMask, int surviveMask) {
+        if (r > 0 && r < rows - 1 && w > 0 && w < wordsPerRow - 1) {
+            int up = (r - 1) * wordsPerRow + w;
+            int mid = r * wordsPerRow + w;
+            int down = (r + 1) * wordsPerRow + w;
+            return evolve(cells[up - 1], cells[up], cells[up + 1], cells[mid - 1], cells[mid], cells[mid + 1],
+                    cells[down - 1], cells[down], cells[down + 1], birthMask, surviveMask);
+        }
+        long result = evolve(haloWord(r - 1, w - 1), haloWord(r - 1, w), haloWord(r - 1, w + 1),
+                haloWord(r, w - 1), haloWord(r, w), haloWord(r, w + 1),
+                haloWord(r + 1, w - 1), haloWord(r + 1, w), haloWord(r + 1, w + 1), birthMask, surviveMask);
+        return (w == wordsPerRow - 1) ? result & lastWordMask : result;
+    }
+
+    /**
+     * Reads a word as the halo buffer would hold it, for words up to one word beyond the edges.
+     *
+     * @param r The row of the word, from -1 to {@code rows}.
+     * @param w The index of the word within the row, from -1 to {@code wordsPerRow}.
+     * @return The cells of the word.
+     */
+    private long haloWord(int r, int w) {
+        int row = inside(r, rows);
+        if (row < 0) {
+            return 0;
+        }
+        int from = row * wordsPerRow;
+        if (w < 0) {
+            return edgeCell(from, inside(-1, cols)) << 63;
+        }
+        long right = edgeCell(from, inside(cols, cols));
+        if (w == wordsPerRow) {
+            return (lastWordMask == -1L) ? right : 0;
+        }
+        long word = cells[from + w];
+        return (w == wordsPerRow - 1 && lastWordMask != -1L) ? word | right << cols : word;
+    }
+
+    /**
+     * Task stepping a band of rows, or copying it into the halo buffer, splitting it in halves until the bands
+     * are small enough.
+     */
+    private class BandTask extends RecursiveAction {
+
+        /**
+         * Fork-join tasks are serializable and require serialVersionUID
+         */
+        private static final long serialVersionUID = 2793340215866418531L;
+
+        /**
+         * The first row of the band.
+         */
+        private final int from;
+
+        /**
+         * The row after the last row of the band.
+         */
+        private final int to;
+
+        /**
+         * Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+         */
+        private final int birthMask;
+
+        /**
+         * Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+         */
+        private final int surviveMask;
+
+        /**
+         * Whether to evaluate whole rows with the wide kernel.
+         */
+        private final boolean wide;
+
+        /**
+         * Whether to copy the band into the halo buffer instead of stepping it.
+         */
+        private final boolean refresh;
+
+        /**
+         * Constructs a task for a band of rows.
+         *
+         * @param from        The first row of the band.
+         * @param to          The row after the last row of the band.
+         * @param birthMask   The birth mask of the rule.
+         * @param surviveMask The survive mask of the rule.
+         * @param wide        Whether to evaluate whole rows with the wide kernel.
+         * @param refresh     Whether to copy the band into the halo buffer instead of stepping it.
+         */
+        BandTask(int from, int to, int birthMask, int surviveMask, boolean wide, boolean refresh) {
+            this.from = from;
+            this.to = to;
+            this.birthMask = birthMask;
+            this.surviveMask = surviveMask;
+            this.wide = wide;
+            this.refresh = refresh;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || (to - from) * wordsPerRow <= MIN_BAND_WORDS) {
+                if (refresh) {
+                    refreshHalo(from, to);
+                } else {
+                    stepRows(from, to, birthMask, surviveMask, wide ? new long[4][wordsPerRow] : null);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BandTask(from, middle, birthMask, surviveMask, wide, refresh),
+                        new BandTask(middle, to, birthMask, surviveMask, wide, refresh));
+            }
+        }
+    }
+
+    /**
+     * Computes the next state of the 64 cells in word {@code m} from the words around it.
+     * The eight neighbour bits of every cell are summed into a 4-bit count using full adders,
+     * and the count is then matched against the rule.
+     *
+     * @return The next state of the 64 cells.
+     */
+    static long evolve(long aL, long a, long aR, long mL, long m, long mR, long bL, long b, long bR,
+                       int birthMask, int surviveMask) {
+        // align the eight neighbours of every cell with the cell itself
+        long n0 = (a << 1) | (aL >>> 63);
+        long n1 = a;
+        long n2 = (a >>> 1) | (aR << 63);
+        long n3 = (m << 1) | (mL >>> 63);
+        long n4 = (m >>> 1) | (mR << 63);
+        long n5 = (b << 1) | (bL >>> 63);
+        long n6 = b;
+        long n7 = (b >>> 1) | (bR << 63);
+
+        // first layer: three adders producing the ones and their carries
+        long x1 = n0 ^ n1;
+        long s1 = x1 ^ n2;
+        long c1 = (n0 & n1) | (x1 & n2);
+        long x2 = n3 ^ n4;
+        long s2 = x2 ^ n5;
+        long c2 = (n3 & n4) | (x2 & n5);
+        long s3 = n6 ^ n7;
+        long c3 = n6 & n7;
+
+        // second layer: the ones bit and the carries of weight two
+        long x4 = s1 ^ s2;
+        long bit0 = x4 ^ s3;
+        long c4 = (s1 & s2) | (x4 & s3);
+        long x5 = c1 ^ c2;
+        long t = x5 ^ c3;
+        long c5 = (c1 & c2) | (x5 & c3);
+        long bit1 = t ^ c4;
+        long c6 = t & c4;
+
+        // third layer: the fours and eights
+        long bit2 = c5 ^ c6;
+        long bit3 = c5 & c6;
+
+        long result = 0;
+        int used = birthMask | surviveMask;
+        for (int n = 0; n <= 8; n++) {
+            if ((used & (1 << n)) == 0) {
+                continue;
+            }
+            long match = (((n & 1) != 0) ? bit0 : ~bit0)
+                    & (((n & 2) != 0) ? bit1 : ~bit1)
+                    & (((n & 4) != 0) ? bit2 : ~bit2)
+                    & (((n & 8) != 0) ? bit3 : ~bit3);
+            long from = (((birthMask & (1 << n)) != 0) ? ~m : 0) | (((surviveMask & (1 << n)) != 0) ? m : 0);
+            result |= match & from;
+        }
+        return result;
+    }
+}
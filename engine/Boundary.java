@@ -0,0 +1,39 @@
+package engine;
+
+/**
+ * What lies beyond the edges of a {@link BitGrid}, as seen by the cells along them.
+ */
+public enum Boundary {
+
+    /**
+     * Every cell beyond the edges is dead.
+     */
+    DEAD,
+
+    /**
+     * The edges wrap around: the cells beyond the right edge are those of the left column and the cells below
+     * the bottom edge those of the top row, so the universe is a torus.
+     */
+    TORUS,
+
+    /**
+     * The edges reflect: every cell beyond an edge is a copy of the cell on the edge next to it.
+     */
+    MIRROR;
+
+    /**
+     * Parses a boundary from its name, ignoring case.
+     *
+     * @param text The name, such as {@code torus}.
+     * @return The boundary.
+     * @throws IllegalArgumentException If no boundary has that name.
+     */
+    public static Boundary parse(String text) {
+        for (Boundary boundary : values()) {
+            if (boundary.name().equalsIgnoreCase(text.trim())) {
+                return boundary;
+            }
+        }
+        throw new IllegalArgumentException("Unknown boundary: " + text);
+    }
+}
@@ -0,0 +1,702 @@
+package engine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many random soups until they settle and counts the objects left in their ash. The ash is split
+ * into objects, cells closer than three cells apart belonging to the same object, and every object is run
+ * on its own until it repeats to name it the way soup searches such as Catagolue do: {@code xs} and the
+ * population for still lifes, {@code xp} and the period for oscillators and {@code xq} and the period for
+ * spaceships, followed by the cells in extended Wechsler format, the shortest encoding over every rotation,
+ * reflection and phase. A block is thus {@code xs4_33} and a blinker {@code xp2_7}. Objects that do not
+ * repeat on their own are counted as {@code zz_UNKNOWN}, or {@code zz_EDGE} if they touch the edge of the
+ * soup, which holds some objects together, and objects more than {@value #MAX_OBJECT} cells across as
+ * {@code zz_LARGE}.
+ * <p>
+ * The soups are spread over the cores in chunks, each chunk reusing one grid, and the objects are counted
+ * in a concurrent table. Usage: {@code java engine.Census [options]}; run it with an invalid option to
+ * list the options. The counts are printed as comma-separated values, the most common object first, along
+ * with the soups run per second.
+ */
+public class Census {
+
+    /**
+     * Help printed for invalid arguments.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java engine.Census [options]",
+            "  --soups N           random soups to run (default 10000)",
+            "  --size N            width and height of the soups (default 64)",
+            "  --density D         fraction of living cells in the soups (default 0.25)",
+            "  --seed S            seed of the first soup, the others following on (default 0)",
+            "  --rule R            rule in B3/S23 or binary notation (default B3/S23)",
+            "  --generations N     generations after which an unsettled soup is left out (default 20000)",
+            "  --threads N         threads running the soups (default: the number of processors)",
+            "  --output FILE       write the counts to a file instead of stdout");
+
+    /**
+     * Number of soups a task runs on the same grid.
+     */
+    private static final int CHUNK = 16;
+
+    /**
+     * The longest cycle of the ash detected, and of an object run on its own.
+     */
+    private static final int MAX_PERIOD = 64;
+
+    /**
+     * The largest width or height of an object that is named.
+     */
+    private static final int MAX_OBJECT = 40;
+
+    /**
+     * Cells this close to each other, counting diagonals, belong to the same object.
+     */
+    private static final int REACH = 2;
+
+    /**
+     * The name of the objects that do not repeat on their own.
+     */
+    private static final String UNKNOWN = "zz_UNKNOWN";
+
+    /**
+     * The digits of extended Wechsler format, one for every column of a strip of five rows.
+     */
+    private static final String DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * The number of soups to run.
+     */
+    private int soups = 10000;
+
+    /**
+     * The width and height of the soups.
+     */
+    private int size = 64;
+
+    /**
+     * The fraction of living cells in the soups.
+     */
+    private double density = Soup.DEFAULT_DENSITY;
+
+    /**
+     * The seed of the first soup.
+     */
+    private long seed;
+
+    /**
+     * The rule the soups evolve by.
+     */
+    private Rule rule = Rule.CONWAY;
+
+    /**
+     * The generations after which an unsettled soup is left out.
+     */
+    private int generations = 20000;
+
+    /**
+     * The number of threads running the soups.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of every object found, by name.
+     */
+    private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    /**
+     * The names of the objects already met, by the encoding of the phase they were met in, so common
+     * objects are only run on their own once.
+     */
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * The number of soups run so far.
+     */
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * The number of soups that did not settle within the generation limit.
+     */
+    private final AtomicLong unsettled = new AtomicLong();
+
+    /**
+     * Runs a census from the command line.
+     *
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        Census census = new Census();
+        Path output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                String value = (i + 1 < args.length) ? args[++i] : null;
+                if (value == null) {
+                    throw new IllegalArgumentException(option + " needs a value");
+                }
+                switch (option) {
+                    case "--soups" -> census.setSoups(Integer.parseInt(value));
+                    case "--size" -> census.setSize(Integer.parseInt(value));
+                    case "--density" -> census.setDensity(Double.parseDouble(value));
+                    case "--seed" -> census.setSeed(Long.parseLong(value));
+                    case "--rule" -> census.setRule(Rule.parse(value));
+                    case "--generations" -> census.setGenerations(Integer.parseInt(value));
+                    case "--threads" -> census.setThreads(Integer.parseInt(value));
+                    case "--output" -> output = Path.of(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Thread progress = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(5000);
+                    long done = census.getCompleted();
+                    System.err.printf(Locale.ROOT, "%d soups, %.1f soups/s%n", done,
+                            done / ((System.nanoTime() - start) / 1e9));
+                }
+            } catch (InterruptedException e) {
+                // the census is over
+            }
+        }, "census-progress");
+        progress.setDaemon(true);
+        progress.start();
+        census.run();
+        progress.interrupt();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        try (PrintWriter out = (output == null)
+                ? new PrintWriter(System.out)
+                : new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.US_ASCII))) {
+            census.write(out);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        long objects = census.getCounts().values().stream().mapToLong(Long::longValue).sum();
+        System.err.printf(Locale.ROOT, "%d soups in %.1f s (%.1f soups/s), %d unsettled, %d objects of %d kinds%n",
+                census.getCompleted(), seconds, census.getCompleted() / seconds, census.getUnsettled(), objects,
+                census.getCounts().size());
+    }
+
+    /**
+     * Sets the number of soups to run.
+     *
+     * @param soups The number of soups, at least 1.
+     */
+    public void setSoups(int soups) {
+        if (soups <= 0) {
+            throw new IllegalArgumentException("The number of soups must be positive: " + soups);
+        }
+        this.soups = soups;
+    }
+
+    /**
+     * Sets the width and height of the soups.
+     *
+     * @param size The size, at least 1.
+     */
+    public void setSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size must be positive: " + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Sets the fraction of living cells in the soups.
+     *
+     * @param density The density, from 0 to 1.
+     */
+    public void setDensity(double density) {
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException("The density must be between 0 and 1: " + density);
+        }
+        this.density = density;
+    }
+
+    /**
+     * Sets the seed of the first soup; soup {@code i} uses the seed plus {@code i}, so any soup can be
+     * regenerated with the Seed field of the game.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the rule the soups evolve by.
+     *
+     * @param rule The rule.
+     */
+    public void setRule(Rule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Sets the generations after which an unsettled soup is left out.
+     *
+     * @param generations The number of generations, at least 1.
+     */
+    public void setGenerations(int generations) {
+        if (generations <= 0) {
+            throw new IllegalArgumentException("The number of generations must be positive: " + generations);
+        }
+        this.generations = generations;
+    }
+
+    /**
+     * Sets the number of threads running the soups.
+     *
+     * @param threads The number of threads, at least 1.
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Gets the number of soups run so far, which may be read while the census runs.
+     *
+     * @return The number of soups.
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Gets the number of soups that did not settle within the generation limit and were left out.
+     *
+     * @return The number of soups.
+     */
+    public long getUnsettled() {
+        return unsettled.get();
+    }
+
+    /**
+     * Gets the number of every object found so far.
+     *
+     * @return The counts by name of the object, a copy.
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> copy = new ConcurrentHashMap<>();
+        counts.forEach((name, count) -> copy.put(name, count.sum()));
+        return copy;
+    }
+
+    /**
+     * Writes the counts as comma-separated values, the most common object first.
+     *
+     * @param out The output.
+     */
+    public void write(PrintWriter out) {
+        out.println("object,count");
+        getCounts().entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> out.println(entry.getKey() + "," + entry.getValue()));
+    }
+
+    /**
+     * Runs the soups and counts their objects, adding to the counts of earlier runs.
+     */
+    public void run() {
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < soups; from += CHUNK) {
+            int start = from;
+            int end = Math.min(soups, from + CHUNK);
+            chunks.add(() -> {
+                BitGrid cells = new BitGrid(size, size);
+                cells.setIncremental(true);
+                CycleDetector detector = new CycleDetector(MAX_PERIOD);
+                int[] labels = new int[size * size];
+                for (int i = start; i < end; i++) {
+                    runSoup(seed + i, cells, detector, labels);
+                    completed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Future<Void> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a soup until it settles and counts the objects of its ash.
+     *
+     * @param soupSeed The seed of the soup.
+     * @param cells    A grid of the size of the soups, overwritten.
+     * @param detector A detector, reset for the soup.
+     * @param labels   Scratch space of one int per cell.
+     */
+    private void runSoup(long soupSeed, BitGrid cells, CycleDetector detector, int[] labels) {
+        new Soup(soupSeed, density).fill(cells);
+        detector.reset();
+        detector.record(0, cells.getHash());
+        for (int generation = 1; ; generation++) {
+            if (generation > generations) {
+                unsettled.incrementAndGet();
+                return;
+            }
+            cells.step(rule);
+            if (detector.record(generation, cells.getHash())) {
+                break;
+            }
+        }
+        for (long[] object : separate(cells, labels)) {
+            counts.computeIfAbsent(name(object), key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Splits the living cells of a grid into objects, joining cells up to {@value #REACH} cells apart.
+     *
+     * @param cells  The grid.
+     * @param labels Scratch space of one int per cell.
+     * @return The cells of every object, as pairs of row and column packed into longs.
+     */
+    private static List<long[]> separate(BitGrid cells, int[] labels) {
+        int rows = cells.getRows();
+        int cols = cells.getCols();
+        Arrays.fill(labels, 0);
+        List<long[]> objects = new ArrayList<>();
+        int[] queue = new int[64];
+        long[] words = cells.getWords();
+        int wordsPerRow = cells.getWordsPerRow();
+        for (int index = 0; index < words.length; index++) {
+            for (long bits = words[index]; bits != 0; bits &= bits - 1) {
+                int row = index / wordsPerRow;
+                int col = (index % wordsPerRow) * 64 + Long.numberOfTrailingZeros(bits);
+                if (labels[row * cols + col] != 0) {
+                    continue;
+                }
+                // flood the object from this cell
+                int label = objects.size() + 1;
+                int head = 0;
+                int tail = 0;
+                queue[tail++] = row * cols + col;
+                labels[row * cols + col] = label;
+                while (head < tail) {
+                    int cell = queue[head++];
+                    int r = cell / cols;
+                    int c = cell % cols;
+                    for (int dr = Math.max(0, r - REACH); dr <= Math.min(rows - 1, r + REACH); dr++) {
+                        for (int dc = Math.max(0, c - REACH); dc <= Math.min(cols - 1, c + REACH); dc++) {
+                            if (labels[dr * cols + dc] == 0 && cells.get(dr, dc)) {
+                                labels[dr * cols + dc] = label;
+                                if (tail == queue.length) {
+                                    queue = Arrays.copyOf(queue, 2 * tail);
+                                }
+                                queue[tail++] = dr * cols + dc;
+                            }
+                        }
+                    }
+                }
+                long[] object = new long[tail];
+                for (int i = 0; i < tail; i++) {
+                    object[i] = ((long) (queue[i] / cols) << 32) | (queue[i] % cols);
+                }
+                objects.add(object);
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Names an object, from the cache if an object with the same cells was met before.
+     *
+     * @param object The cells of the object, as pairs of row and column packed into longs.
+     * @return The name.
+     */
+    private String name(long[] object) {
+        Phase phase = Phase.of(object);
+        if (phase.width > MAX_OBJECT || phase.height > MAX_OBJECT) {
+            return "zz_LARGE";
+        }
+        String name = names.computeIfAbsent(phase.encode(0), key -> classify(phase));
+        // beyond the edge of the soup every cell stays dead, which can hold objects that fall apart on their own
+        boolean edge = phase.top == 0 || phase.left == 0 || phase.top + phase.height == size
+                || phase.left + phase.width == size;
+        return (edge && name.equals(UNKNOWN)) ? "zz_EDGE" : name;
+    }
+
+    /**
+     * Runs an object on its own until it repeats and names it.
+     *
+     * @param first The object.
+     * @return The name.
+     */
+    private String classify(Phase first) {
+        // room for the fastest spaceships to travel for a whole period
+        int margin = MAX_PERIOD / 2 + 2;
+        BitGrid cells = new BitGrid(first.height + 2 * margin, first.width + 2 * margin);
+        for (int r = 0; r < first.height; r++) {
+            for (long bits = first.rows[r]; bits != 0; bits &= bits - 1) {
+                cells.set(margin + r, margin + Long.numberOfTrailingZeros(bits), true);
+            }
+        }
+        String shape = first.encode(0);
+        List<Phase> phases = new ArrayList<>();
+        phases.add(first);
+        for (int period = 1; period <= MAX_PERIOD; period++) {
+            cells.step(rule);
+            Phase phase = Phase.of(cells);
+            if (phase == null || phase.width > MAX_OBJECT || phase.height > MAX_OBJECT) {
+                return UNKNOWN;
+            }
+            if (phase.encode(0).equals(shape)) {
+                String code = phases.stream().map(Phase::canonical).min(Census::compareCodes).orElseThrow();
+                if (period == 1) {
+                    return "xs" + first.population() + "_" + code;
+                }
+                // the phase repeats where it started for oscillators and elsewhere for spaceships
+                boolean moved = phase.top != margin || phase.left != margin;
+                return (moved ? "xq" : "xp") + period + "_" + code;
+            }
+            phases.add(phase);
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Orders encodings, the shorter first and equal lengths alphabetically.
+     *
+     * @param a An encoding.
+     * @param b Another encoding.
+     * @return A negative number if {@code a} comes first, a positive one if {@code b} does, 0 if they are equal.
+     */
+    private static int compareCodes(String a, String b) {
+        return Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()).compare(a, b);
+    }
+
+    /**
+     * The cells of an object in one generation, trimmed to their bounding box.
+     */
+    private static final class Phase {
+
+        /**
+         * The row of the top of the bounding box in the grid the object was taken from.
+         */
+        private final int top;
+
+        /**
+         * The column of the left of the bounding box in the grid the object was taken from.
+         */
+        private final int left;
+
+        /**
+         * The width of the bounding box.
+         */
+        private final int width;
+
+        /**
+         * The height of the bounding box.
+         */
+        private final int height;
+
+        /**
+         * The cells, bit {@code c} of row {@code r} for the cell {@code c} columns right of the left edge.
+         */
+        private final long[] rows;
+
+        /**
+         * Constructs a phase.
+         *
+         * @param top    The row of the top of the bounding box.
+         * @param left   The column of the left of the bounding box.
+         * @param width  The width of the bounding box.
+         * @param height The height of the bounding box.
+         * @param rows   The cells, row by row.
+         */
+        private Phase(int top, int left, int width, int height, long[] rows) {
+            this.top = top;
+            this.left = left;
+            this.width = width;
+            this.height = height;
+            this.rows = rows;
+        }
+
+        /**
+         * Collects the cells of an object. Objects wider than a word are only measured, not collected.
+         *
+         * @param object The cells, as pairs of row and column packed into longs.
+         * @return The phase.
+         */
+        static Phase of(long[] object) {
+            int top = Integer.MAX_VALUE;
+            int left = Integer.MAX_VALUE;
+            int bottom = 0;
+            int right = 0;
+            for (long cell : object) {
+                int r = (int) (cell >>> 32);
+                int c = (int) cell;
+                top = Math.min(top, r);
+                left = Math.min(left, c);
+                bottom = Math.max(bottom, r);
+                right = Math.max(right, c);
+            }
+            int width = right - left + 1;
+            int height = bottom - top + 1;
+            long[] rows = new long[height];
+            if (width <= Long.SIZE) {
+                for (long cell : object) {
+                    rows[(int) (cell >>> 32) - top] |= 1L << ((int) cell - left);
+                }
+            }
+            return new Phase(top, left, width, height, rows);
+        }
+
+        /**
+         * Collects every living cell of a grid as one object.
+         *
+         * @param cells The grid.
+         * @return The phase, or {@code null} if every cell is dead.
+         */
+        static Phase of(BitGrid cells) {
+            List<Long> object = new ArrayList<>();
+            long[] words = cells.getWords();
+            int wordsPerRow = cells.getWordsPerRow();
+            for (int index = 0; index < words.length; index++) {
+                for (long bits = words[index]; bits != 0; bits &= bits - 1) {
+                    long row = index / wordsPerRow;
+                    long col = (index % wordsPerRow) * 64L + Long.numberOfTrailingZeros(bits);
+                    object.add((row << 32) | col);
+                }
+            }
+            return object.isEmpty() ? null : of(object.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        /**
+         * Counts the living cells.
+         *
+         * @return The population.
+         */
+        int population() {
+            int population = 0;
+            for (long row : rows) {
+                population += Long.bitCount(row);
+            }
+            return population;
+        }
+
+        /**
+         * Checks whether a cell is alive.
+         *
+         * @param x The column within the bounding box.
+         * @param y The row within the bounding box.
+         * @return {@code true} if the cell is alive.
+         */
+        private boolean get(int x, int y) {
+            return (rows[y] & (1L << x)) != 0;
+        }
+
+        /**
+         * Encodes the cells in extended Wechsler format, over every rotation and reflection.
+         *
+         * @return The shortest encoding, the alphabetically first among the shortest.
+         */
+        String canonical() {
+            String best = encode(0);
+            for (int orientation = 1; orientation < 8; orientation++) {
+                String code = encode(orientation);
+                if (compareCodes(code, best) < 0) {
+                    best = code;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Encodes the cells in extended Wechsler format in one orientation: the rows are cut into strips of
+         * five, every column of a strip is a digit from 0 to v with the top row as its lowest bit, runs of
+         * empty columns are shortened to {@code w}, {@code x} or {@code y} and a count, and the strips are
+         * separated by {@code z}.
+         *
+         * @param orientation Bit 0 mirrors the columns, bit 1 the rows and bit 2 swaps rows and columns.
+         * @return The encoding.
+         */
+        String encode(int orientation) {
+            boolean flipX = (orientation & 1) != 0;
+            boolean flipY = (orientation & 2) != 0;
+            boolean swap = (orientation & 4) != 0;
+            int length = swap ? height : width;
+            int breadth = swap ? width : height;
+            StringBuilder sb = new StringBuilder();
+            for (int strip = 0; strip * 5 < breadth; strip++) {
+                if (strip > 0) {
+                    sb.append('z');
+                }
+                int zeroes = 0;
+                for (int u = 0; u < length; u++) {
+                    int digit = 0;
+                    for (int w = 0; w < 5 && strip * 5 + w < breadth; w++) {
+                        int v = strip * 5 + w;
+                        int x = swap ? v : u;
+                        int y = swap ? u : v;
+                        if (get(flipX ? width - 1 - x : x, flipY ? height - 1 - y : y)) {
+                            digit |= 1 << w;
+                        }
+                    }
+                    if (digit == 0) {
+                        zeroes++;
+                        continue;
+                    }
+                    for (; zeroes >= 40; zeroes -= 39) {
+                        sb.append("yz");
+                    }
+                    switch (zeroes) {
+                        case 0 -> {
+                        }
+                        case 1 -> sb.append('0');
+                        case 2 -> sb.append('w');
+                        case 3 -> sb.append('x');
+                        default -> sb.append('y').append(DIGITS.charAt(zeroes - 4));
+                    }
+                    zeroes = 0;
+                    sb.append(DIGITS.charAt(digit));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
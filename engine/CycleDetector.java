@@ -0,0 +1,108 @@
+package engine;
+
+/**
+ * Detects a run that has settled, by remembering the hashes of recent generations in a ring. A generation
+ * whose hash was already seen repeats an earlier one, so the run has died out, become still or entered a
+ * cycle, and everything after is known.
+ */
+public class CycleDetector {
+
+    /**
+     * The longest period detected by default.
+     */
+    public static final int DEFAULT_MAX_PERIOD = 64;
+
+    /**
+     * Hashes of the most recent generations.
+     */
+    private final long[] hashes;
+
+    /**
+     * The generations the hashes belong to.
+     */
+    private final long[] generations;
+
+    /**
+     * The number of generations recorded since the last reset, capped at the size of the ring.
+     */
+    private int count;
+
+    /**
+     * The slot the next generation is recorded in.
+     */
+    private int head;
+
+    /**
+     * The first generation of the detected cycle.
+     */
+    private long start;
+
+    /**
+     * The period of the detected cycle, 0 while none was detected.
+     */
+    private long period;
+
+    /**
+     * Constructs a detector.
+     *
+     * @param maxPeriod The longest period to detect.
+     */
+    public CycleDetector(int maxPeriod) {
+        if (maxPeriod <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + maxPeriod);
+        }
+        this.hashes = new long[maxPeriod];
+        this.generations = new long[maxPeriod];
+    }
+
+    /**
+     * Forgets every recorded generation, for instance after the cells were edited.
+     */
+    public void reset() {
+        count = 0;
+        head = 0;
+        period = 0;
+    }
+
+    /**
+     * Records a generation and checks whether it repeats one of the recent generations.
+     *
+     * @param generation The number of the generation.
+     * @param hash       The hash of the generation.
+     * @return {@code true} if a cycle was detected.
+     */
+    public boolean record(long generation, long hash) {
+        // walk back from the newest entry, so the shortest period is found first
+        for (int i = 1; i <= count; i++) {
+            int slot = Math.floorMod(head - i, hashes.length);
+            if (hashes[slot] == hash) {
+                start = generations[slot];
+                period = generation - start;
+                return true;
+            }
+        }
+        hashes[head] = hash;
+        generations[head] = generation;
+        head = (head + 1) % hashes.length;
+        count = Math.min(count + 1, hashes.length);
+        return false;
+    }
+
+    /**
+     * Gets the first generation of the detected cycle.
+     *
+     * @return The generation.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the period of the detected cycle; 1 for a still life or an empty grid.
+     *
+     * @return The period, 0 while no cycle was detected.
+     */
+    public long getPeriod() {
+        return period;
+    }
+}
@@ -0,0 +1,167 @@
+package engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many steps the simulation runs between two displayed frames. It measures what a step and
+ * the rendering of a frame cost, and sizes each batch to fill one frame, so that a run is neither capped by
+ * a fixed tick when steps are cheap nor stuck on a frozen screen when they are expensive.
+ * <p>
+ * With a target rate, batches are also limited to the generations due in one frame and the simulation waits
+ * between them; without one, it runs as fast as possible.
+ */
+public class FramePacer {
+
+    /**
+     * Largest number of steps in one batch.
+     */
+    private static final int MAX_BATCH = 1 << 20;
+
+    /**
+     * Weight of a new measurement in the running averages, as a power of two.
+     */
+    private static final int SMOOTHING = 3;
+
+    /**
+     * Time between two displayed frames in nanoseconds.
+     */
+    private final long frameNanos;
+
+    /**
+     * The target number of generations per second, 0 for as fast as possible.
+     */
+    private volatile double targetRate;
+
+    /**
+     * Average time of a step in nanoseconds, 0 until measured.
+     */
+    private long stepNanos;
+
+    /**
+     * Average number of generations advanced by a step.
+     */
+    private double stepGenerations = 1;
+
+    /**
+     * Average time to render a frame in nanoseconds.
+     */
+    private volatile long renderNanos;
+
+    /**
+     * Constructs a pacer running as fast as possible.
+     *
+     * @param targetFps The number of frames to display per second.
+     */
+    public FramePacer(int targetFps) {
+        if (targetFps <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + targetFps);
+        }
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / targetFps;
+    }
+
+    /**
+     * Gets the time between two displayed frames.
+     *
+     * @return The frame time in nanoseconds.
+     */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * Gets the time between two displayed frames.
+     *
+     * @return The frame time in milliseconds.
+     */
+    public int getFrameMillis() {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(frameNanos));
+    }
+
+    /**
+     * Sets the number of generations to run per second.
+     *
+     * @param targetRate The rate, 0 for as fast as possible.
+     */
+    public void setTargetRate(double targetRate) {
+        this.targetRate = Math.max(0, targetRate);
+    }
+
+    /**
+     * Gets the number of generations to run per second.
+     *
+     * @return The rate, 0 for as fast as possible.
+     */
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    /**
+     * Gets the number of generations per second the simulation can run, from the measured cost of a step.
+     *
+     * @return The rate, 0 until a step was measured.
+     */
+    public double getMeasuredRate() {
+        return (stepNanos == 0) ? 0 : stepGenerations * TimeUnit.SECONDS.toNanos(1) / stepNanos;
+    }
+
+    /**
+     * Computes the number of steps to run before the next frame is published.
+     *
+     * @return The number of steps, at least 1.
+     */
+    public int batch() {
+        if (stepNanos == 0) {
+            return 1;
+        }
+        // a frame cannot be shown more often than it can be rendered
+        long interval = Math.max(frameNanos, renderNanos);
+        double steps = (double) interval / stepNanos;
+        double rate = targetRate;
+        if (rate > 0) {
+            steps = Math.min(steps, rate * interval / TimeUnit.SECONDS.toNanos(1) / stepGenerations);
+        }
+        return (int) Math.max(1, Math.min(MAX_BATCH, steps));
+    }
+
+    /**
+     * Computes how long to wait after a batch so the target rate is kept.
+     *
+     * @param generations The number of generations advanced by the batch.
+     * @return The time from the start of the batch to the start of the next one in nanoseconds.
+     */
+    public long delay(long generations) {
+        double rate = targetRate;
+        return (rate > 0) ? (long) (generations * TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+    }
+
+    /**
+     * Records the cost of a batch.
+     *
+     * @param nanos       The time the batch took in nanoseconds.
+     * @param steps       The number of steps run.
+     * @param generations The number of generations advanced.
+     */
+    public void recordStep(long nanos, int steps, long generations) {
+        if (steps <= 0) {
+            return;
+        }
+        long perStep = Math.max(1, nanos / steps);
+        double perStepGenerations = (double) generations / steps;
+        if (stepNanos == 0) {
+            stepNanos = perStep;
+            stepGenerations = perStepGenerations;
+        } else {
+            stepNanos += (perStep - stepNanos) >> SMOOTHING;
+            stepGenerations += (perStepGenerations - stepGenerations) / (1 << SMOOTHING);
+        }
+    }
+
+    /**
+     * Records the cost of rendering a frame; called by the thread that renders.
+     *
+     * @param nanos The time the frame took in nanoseconds.
+     */
+    public void recordRender(long nanos) {
+        renderNanos += (nanos - renderNanos) >> SMOOTHING;
+    }
+}
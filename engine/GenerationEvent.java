@@ -0,0 +1,72 @@
+package engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event emitted for every step of the simulation. Start a recording with
+ * {@code -XX:StartFlightRecording} and the events show up under Game of Life in JDK Mission Control, or
+ * with {@code jfr print --events gameoflife.Generation}.
+ */
+@Name("gameoflife.Generation")
+@Label("Generation")
+@Category("Game of Life")
+@Description("A step of the simulation")
+@StackTrace(false)
+class GenerationEvent extends jdk.jfr.Event {
+
+    /**
+     * The generation reached by the step.
+     */
+    @Label("Generation")
+    long generation;
+
+    /**
+     * The number of generations the step advanced.
+     */
+    @Label("Generations Advanced")
+    long advanced;
+
+    /**
+     * The time the step took.
+     */
+    @Label("Step Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long stepTime;
+
+    /**
+     * The number of cells the step evaluated.
+     */
+    @Label("Cells Evaluated")
+    long evaluated;
+
+    /**
+     * The number of cells born in the step.
+     */
+    @Label("Births")
+    long births;
+
+    /**
+     * The number of cells that died in the step.
+     */
+    @Label("Deaths")
+    long deaths;
+
+    /**
+     * The number of living cells after the step.
+     */
+    @Label("Population")
+    long population;
+
+    /**
+     * The bytes the step allocated on the simulation thread.
+     */
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
@@ -0,0 +1,624 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * HashLife engine that advances the universe by {@code 2^k} generations at a time. The universe is stored as
+ * a quadtree whose nodes are canonicalized, so identical regions share a single node, and the future of the
+ * centre of every node is memoized on the node. Periodic and sparse patterns therefore jump huge numbers of
+ * generations at almost no cost.
+ * <p>
+ * The pattern evolves on an unbounded plane; the grid it is loaded from and stored into shows a window of it.
+ * Rules where dead cells with no neighbours are born cannot live on an unbounded plane, and grids whose edges
+ * wrap around or mirror are no window of one, so both are stepped on the packed grid instead.
+ * <p>
+ * The number of nodes is capped. Between two jumps, once the cap is exceeded, nodes that are neither part of
+ * the current universe nor used during the last jump are collected, along with their memoized results.
+ */
+public class HashLife implements LifeEngine {
+
+    /**
+     * Default cap on the number of canonical nodes.
+     */
+    public static final int DEFAULT_MAX_NODES = 1 << 22;
+
+    /**
+     * Largest exponent of a jump. The root is at least three levels above it, and the positions of its cells
+     * have to fit in a long, so larger jumps are made in several of these.
+     */
+    public static final int MAX_STEP_EXPONENT = 48;
+
+    /**
+     * Smallest level the root is kept at.
+     */
+    private static final int MIN_LEVEL = 3;
+
+    /**
+     * A node of the quadtree, covering a square of {@code 2^level} cells.
+     */
+    private static final class Node {
+
+        /**
+         * The four quadrants, {@code null} for single cells.
+         */
+        final Node nw, ne, sw, se;
+
+        /**
+         * The square covers {@code 2^level} by {@code 2^level} cells.
+         */
+        final int level;
+
+        /**
+         * The number of living cells in the square.
+         */
+        final long population;
+
+        /**
+         * Unique number used to hash the nodes built from this one.
+         */
+        final long id;
+
+        /**
+         * The memoized centre of the node advanced by the current step, or {@code null}.
+         */
+        Node result;
+
+        /**
+         * The jump the node was last used in.
+         */
+        int epoch;
+
+        /**
+         * Mark set while collecting unused nodes.
+         */
+        boolean marked;
+
+        /**
+         * Next node in the same bucket of the canonical table.
+         */
+        Node next;
+
+        /**
+         * Constructs a single cell.
+         *
+         * @param alive Whether the cell is alive.
+         * @param id    Unique number of the node.
+         */
+        Node(boolean alive, long id) {
+            this.nw = this.ne = this.sw = this.se = null;
+            this.level = 0;
+            this.population = alive ? 1 : 0;
+            this.id = id;
+        }
+
+        /**
+         * Constructs a node from its quadrants.
+         *
+         * @param nw North-west quadrant.
+         * @param ne North-east quadrant.
+         * @param sw South-west quadrant.
+         * @param se South-east quadrant.
+         * @param id Unique number of the node.
+         */
+        Node(Node nw, Node ne, Node sw, Node se, long id) {
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.level = nw.level + 1;
+            this.population = nw.population + ne.population + sw.population + se.population;
+            this.id = id;
+        }
+    }
+
+    /**
+     * The dead cell.
+     */
+    private final Node dead;
+
+    /**
+     * The living cell.
+     */
+    private final Node alive;
+
+    /**
+     * Empty nodes indexed by level.
+     */
+    private final Node[] empty = new Node[64];
+
+    /**
+     * Canonical table of all nodes above level 0, chained per bucket.
+     */
+    private Node[] table = new Node[1 << 16];
+
+    /**
+     * The number of nodes in the canonical table.
+     */
+    private int nodeCount;
+
+    /**
+     * Counter giving every node a unique number.
+     */
+    private long nextId;
+
+    /**
+     * Cap on the number of nodes kept between jumps.
+     */
+    private final int maxNodes;
+
+    /**
+     * The current universe, centred on the origin. Cell {@code (row, col)} of the grid is at {@code x = col, y = row}.
+     */
+    private Node root;
+
+    /**
+     * Each jump advances {@code 2^stepExponent} generations.
+     */
+    private int stepExponent;
+
+    /**
+     * The rule the memoized results were computed with.
+     */
+    private Rule rule;
+
+    /**
+     * The number of the current jump, used to find nodes that were not used recently.
+     */
+    private int epoch;
+
+    /**
+     * A flag indicating whether the universe has to be reloaded from the grid.
+     */
+    private boolean stale = true;
+
+    /**
+     * The words of the grid the universe is stored into, reused between jumps.
+     */
+    private long[] words;
+
+    /**
+     * Constructs an engine with the default cap on the number of nodes, jumping one generation at a time.
+     */
+    public HashLife() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Constructs an engine jumping one generation at a time.
+     *
+     * @param maxNodes The cap on the number of nodes kept between jumps.
+     */
+    public HashLife(int maxNodes) {
+        this.maxNodes = maxNodes;
+        this.dead = new Node(false, nextId++);
+        this.alive = new Node(true, nextId++);
+        empty[0] = dead;
+    }
+
+    /**
+     * Sets how many generations every jump advances, at most {@code 2^}{@value #MAX_STEP_EXPONENT}.
+     *
+     * @param stepExponent Every jump advances {@code 2^stepExponent} generations; larger exponents are
+     *                     lowered to {@link #MAX_STEP_EXPONENT}.
+     */
+    public void setStepExponent(int stepExponent) {
+        stepExponent = Math.max(0, Math.min(stepExponent, MAX_STEP_EXPONENT));
+        if (stepExponent != this.stepExponent) {
+            this.stepExponent = stepExponent;
+            clearResults();
+        }
+    }
+
+    /**
+     * Gets how many generations every jump advances.
+     *
+     * @return The exponent {@code k}, every jump advances {@code 2^k} generations.
+     */
+    public int getStepExponent() {
+        return stepExponent;
+    }
+
+    /**
+     * Gets the number of canonical nodes currently stored.
+     *
+     * @return The number of nodes.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Counts the living cells of the whole universe, including those outside the grid.
+     *
+     * @return The population.
+     */
+    public long population() {
+        return (root == null) ? 0 : root.population;
+    }
+
+    @Override
+    public void invalidate() {
+        stale = true;
+    }
+
+    @Override
+    public long advance(BitGrid cells, Rule rule) {
+        if ((rule.getBirthMask() & 1) != 0 || cells.getBoundary() != Boundary.DEAD) {
+            stale = true;
+            cells.step(rule);
+            return 1;
+        }
+        if (!rule.equals(this.rule)) {
+            this.rule = rule;
+            clearResults();
+        }
+        if (stale || root == null) {
+            load(cells);
+        }
+        if (nodeCount > maxNodes) {
+            collect(true);
+            if (nodeCount > maxNodes / 2) {
+                collect(false);
+            }
+        }
+        epoch++;
+        // make room for the pattern to grow by 2^k cells on every side of the result
+        while (root.level < stepExponent + 2 || !centred(root)) {
+            root = expand(root);
+        }
+        root = expand(root);
+        root = step(root);
+        store(cells, 1L << stepExponent);
+        return 1L << stepExponent;
+    }
+
+    /**
+     * Loads the universe from the living cells of a grid.
+     *
+     * @param cells The grid to load.
+     */
+    public void load(BitGrid cells) {
+        int level = MIN_LEVEL;
+        while ((1L << (level - 1)) < Math.max(cells.getRows(), cells.getCols())) {
+            level++;
+        }
+        long half = 1L << (level - 1);
+        root = build(cells, level, -half, -half);
+        stale = false;
+    }
+
+    /**
+     * Builds the node covering a square of the grid.
+     *
+     * @param cells The grid to read.
+     * @param level The level of the node.
+     * @param x     The column of the top left corner.
+     * @param y     The row of the top left corner.
+     * @return The canonical node.
+     */
+    private Node build(BitGrid cells, int level, long x, long y) {
+        long size = 1L << level;
+        if (x >= cells.getCols() || y >= cells.getRows() || x + size <= 0 || y + size <= 0) {
+            return empty(level);
+        }
+        if (level == 0) {
+            return cells.get((int) y, (int) x) ? alive : dead;
+        }
+        long half = size >> 1;
+        return join(build(cells, level - 1, x, y), build(cells, level - 1, x + half, y),
+                build(cells, level - 1, x, y + half), build(cells, level - 1, x + half, y + half));
+    }
+
+    /**
+     * Stores the part of the universe inside the grid into the grid, as a generation a number of generations
+     * after the one the grid holds.
+     *
+     * @param cells       The grid to write.
+     * @param generations The number of generations the universe advanced since the grid was last written.
+     */
+    public void store(BitGrid cells, long generations) {
+        if (words == null || words.length != cells.getWords().length) {
+            words = new long[cells.getWords().length];
+        } else {
+            Arrays.fill(words, 0L);
+        }
+        long half = 1L << (root.level - 1);
+        write(cells, root, -half, -half);
+        cells.advanceTo(words, generations);
+    }
+
+    /**
+     * Writes the living cells of a node into the words of the grid.
+     *
+     * @param cells The grid whose size the words have.
+     * @param node  The node to write.
+     * @param x     The column of the top left corner.
+     * @param y     The row of the top left corner.
+     */
+    private void write(BitGrid cells, Node node, long x, long y) {
+        long size = 1L << node.level;
+        if (node.population == 0 || x >= cells.getCols() || y >= cells.getRows() || x + size <= 0 || y + size <= 0) {
+            return;
+        }
+        if (node.level == 0) {
+            words[(int) y * cells.getWordsPerRow() + (int) (x >>> 6)] |= 1L << x;
+            return;
+        }
+        long half = size >> 1;
+        write(cells, node.nw, x, y);
+        write(cells, node.ne, x + half, y);
+        write(cells, node.sw, x, y + half);
+        write(cells, node.se, x + half, y + half);
+    }
+
+    /**
+     * Checks whether all living cells of a node lie in its centre half.
+     *
+     * @param node The node to check.
+     * @return {@code true} if the border quarter of the node is empty.
+     */
+    private static boolean centred(Node node) {
+        return node.nw.nw.population + node.nw.ne.population + node.nw.sw.population
+                + node.ne.nw.population + node.ne.ne.population + node.ne.se.population
+                + node.sw.nw.population + node.sw.sw.population + node.sw.se.population
+                + node.se.ne.population + node.se.sw.population + node.se.se.population == 0;
+    }
+
+    /**
+     * Surrounds a node with empty space, keeping it centred.
+     *
+     * @param node The node to expand.
+     * @return A node one level higher with the same centre.
+     */
+    private Node expand(Node node) {
+        Node e = empty(node.level - 1);
+        return join(join(e, e, e, node.nw), join(e, e, node.ne, e),
+                join(e, node.sw, e, e), join(node.se, e, e, e));
+    }
+
+    /**
+     * Computes the centre of a node advanced by {@code 2^min(k, level - 2)} generations.
+     *
+     * @param node A node of level 2 or higher.
+     * @return The centre of the node, one level lower, in the future.
+     */
+    private Node step(Node node) {
+        node.epoch = epoch;
+        if (node.result != null) {
+            return node.result;
+        }
+        Node result;
+        if (node.population == 0) {
+            result = empty(node.level - 1);
+        } else if (node.level == 2) {
+            result = stepLeaf(node);
+        } else {
+            boolean fullSpeed = stepExponent >= node.level - 2;
+            Node n00 = node.nw;
+            Node n01 = join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw);
+            Node n02 = node.ne;
+            Node n10 = join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne);
+            Node n11 = join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+            Node n12 = join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne);
+            Node n20 = node.sw;
+            Node n21 = join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw);
+            Node n22 = node.se;
+            // at full speed both halves of the jump advance, otherwise only the second half does
+            Node r00 = fullSpeed ? step(n00) : centre(n00);
+            Node r01 = fullSpeed ? step(n01) : centre(n01);
+            Node r02 = fullSpeed ? step(n02) : centre(n02);
+            Node r10 = fullSpeed ? step(n10) : centre(n10);
+            Node r11 = fullSpeed ? step(n11) : centre(n11);
+            Node r12 = fullSpeed ? step(n12) : centre(n12);
+            Node r20 = fullSpeed ? step(n20) : centre(n20);
+            Node r21 = fullSpeed ? step(n21) : centre(n21);
+            Node r22 = fullSpeed ? step(n22) : centre(n22);
+            result = join(step(join(r00, r01, r10, r11)), step(join(r01, r02, r11, r12)),
+                    step(join(r10, r11, r20, r21)), step(join(r11, r12, r21, r22)));
+        }
+        node.result = result;
+        return result;
+    }
+
+    /**
+     * Computes the centre of a 4x4 node one generation ahead by counting neighbours directly.
+     *
+     * @param node A node of level 2.
+     * @return The 2x2 centre in the next generation.
+     */
+    private Node stepLeaf(Node node) {
+        int bits = 0;
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                Node quadrant = (y < 2) ? ((x < 2) ? node.nw : node.ne) : ((x < 2) ? node.sw : node.se);
+                Node cell = ((y & 1) == 0) ? (((x & 1) == 0) ? quadrant.nw : quadrant.ne)
+                        : (((x & 1) == 0) ? quadrant.sw : quadrant.se);
+                if (cell.population != 0) {
+                    bits |= 1 << (y * 4 + x);
+                }
+            }
+        }
+        return join(nextCell(bits, 1, 1), nextCell(bits, 2, 1), nextCell(bits, 1, 2), nextCell(bits, 2, 2));
+    }
+
+    /**
+     * Applies the rule to one cell of a 4x4 block.
+     *
+     * @param bits The living cells of the block, bit {@code y * 4 + x} for cell {@code (x, y)}.
+     * @param x    The column of the cell.
+     * @param y    The row of the cell.
+     * @return The cell in the next generation.
+     */
+    private Node nextCell(int bits, int x, int y) {
+        int neighbours = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dx != 0 || dy != 0) && (bits & (1 << ((y + dy) * 4 + x + dx))) != 0) {
+                    neighbours++;
+                }
+            }
+        }
+        return rule.next((bits & (1 << (y * 4 + x))) != 0, neighbours) ? alive : dead;
+    }
+
+    /**
+     * Gets the centre of a node without advancing it.
+     *
+     * @param node A node of level 2 or higher.
+     * @return The centre, one level lower.
+     */
+    private Node centre(Node node) {
+        return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    /**
+     * Gets the empty node of a level.
+     *
+     * @param level The level.
+     * @return The canonical empty node.
+     */
+    private Node empty(int level) {
+        if (empty[level] == null) {
+            Node e = empty(level - 1);
+            empty[level] = join(e, e, e, e);
+        }
+        return empty[level];
+    }
+
+    /**
+     * Finds or creates the canonical node made of four quadrants.
+     *
+     * @param nw North-west quadrant.
+     * @param ne North-east quadrant.
+     * @param sw South-west quadrant.
+     * @param se South-east quadrant.
+     * @return The canonical node.
+     */
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        int bucket = hash(nw, ne, sw, se) & (table.length - 1);
+        for (Node node = table[bucket]; node != null; node = node.next) {
+            if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+                node.epoch = epoch;
+                return node;
+            }
+        }
+        Node node = new Node(nw, ne, sw, se, nextId++);
+        node.epoch = epoch;
+        node.next = table[bucket];
+        table[bucket] = node;
+        if (++nodeCount > table.length - (table.length >> 2)) {
+            rehash(table.length << 1);
+        }
+        return node;
+    }
+
+    /**
+     * Hashes four quadrants.
+     *
+     * @return The hash of the node made of the quadrants.
+     */
+    private static int hash(Node nw, Node ne, Node sw, Node se) {
+        long h = nw.id * 0x9E3779B97F4A7C15L;
+        h = (h ^ ne.id) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ sw.id) * 0x165667B19E3779F9L;
+        h = (h ^ se.id) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Moves every node into a table of a new size.
+     *
+     * @param size The new number of buckets, a power of two.
+     */
+    private void rehash(int size) {
+        Node[] old = table;
+        table = new Node[size];
+        for (Node head : old) {
+            for (Node node = head; node != null; ) {
+                Node next = node.next;
+                int bucket = hash(node.nw, node.ne, node.sw, node.se) & (size - 1);
+                node.next = table[bucket];
+                table[bucket] = node;
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Forgets every memoized result.
+     */
+    private void clearResults() {
+        for (Node head : table) {
+            for (Node node = head; node != null; node = node.next) {
+                node.result = null;
+            }
+        }
+    }
+
+    /**
+     * Drops the nodes that are not part of the current universe. Nodes used during the last jump, and the
+     * nodes they are made of, are kept as well when asked to, so the working set of periodic patterns survives.
+     *
+     * @param keepRecent Whether nodes used during the last jump are kept.
+     */
+    private void collect(boolean keepRecent) {
+        if (keepRecent) {
+            for (Node head : table) {
+                for (Node node = head; node != null; node = node.next) {
+                    if (node.epoch >= epoch) {
+                        mark(node);
+                    }
+                }
+            }
+        }
+        mark(root);
+        for (Node e : empty) {
+            if (e != null) {
+                mark(e);
+            }
+        }
+        Node[] old = table;
+        table = new Node[old.length];
+        nodeCount = 0;
+        for (Node head : old) {
+            for (Node node = head; node != null; ) {
+                Node next = node.next;
+                if (node.marked) {
+                    int bucket = hash(node.nw, node.ne, node.sw, node.se) & (table.length - 1);
+                    node.next = table[bucket];
+                    table[bucket] = node;
+                    nodeCount++;
+                }
+                node = next;
+            }
+        }
+        for (Node head : table) {
+            for (Node node = head; node != null; node = node.next) {
+                if (node.result != null && node.result.level > 0 && !node.result.marked) {
+                    node.result = null;
+                }
+            }
+        }
+        for (Node head : table) {
+            for (Node node = head; node != null; node = node.next) {
+                node.marked = false;
+            }
+        }
+    }
+
+    /**
+     * Marks a node and the nodes it is made of as in use.
+     *
+     * @param node The node to mark.
+     */
+    private static void mark(Node node) {
+        if (node.level == 0 || node.marked) {
+            return;
+        }
+        node.marked = true;
+        mark(node.nw);
+        mark(node.ne);
+        mark(node.sw);
+        mark(node.se);
+    }
+}
@@ -0,0 +1,403 @@
+package engine;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded history of the generations of a grid, so a run can be stepped back and scrubbed. Every few
+ * generations a keyframe holds a full copy of the words; the generations in between only store the XOR
+ * with the previous generation, run-length encoded as the distances between the cells that flipped, one
+ * variable-length number each. Only a few cells flip from one generation to the next, so a generation
+ * costs a fraction of a full copy, typically a byte or two per flipped cell. When the history grows beyond
+ * its memory budget, the oldest keyframe is evicted along with the generations that depend on it.
+ */
+public class History {
+
+    /**
+     * Default memory budget in bytes.
+     */
+    public static final long DEFAULT_BUDGET = 64L << 20;
+
+    /**
+     * Largest number of generations between two keyframes, bounding the work of restoring a generation.
+     */
+    private static final int KEYFRAME_INTERVAL = 64;
+
+    /**
+     * Estimated bytes used by an entry besides its arrays.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * A recorded generation.
+     */
+    private static final class Entry {
+
+        /**
+         * The number of the generation.
+         */
+        final long generation;
+
+        /**
+         * The hash of the generation, telling whether a grid still holds it.
+         */
+        final long hash;
+
+        /**
+         * Full copy of the words for a keyframe, otherwise {@code null}.
+         */
+        final long[] keyframe;
+
+        /**
+         * The distances between the cells that flipped since the previous entry, seven bits per byte with the
+         * high bit set on all but the last byte of each distance.
+         */
+        final byte[] delta;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param generation The number of the generation.
+         * @param hash       The hash of the generation.
+         * @param keyframe   Full copy of the words for a keyframe, otherwise {@code null}.
+         * @param delta      The distances between the cells that flipped since the previous entry.
+         */
+        Entry(long generation, long hash, long[] keyframe, byte[] delta) {
+            this.generation = generation;
+            this.hash = hash;
+            this.keyframe = keyframe;
+            this.delta = delta;
+        }
+
+        /**
+         * Estimates the memory used by the entry.
+         *
+         * @return The number of bytes.
+         */
+        long bytes() {
+            long bytes = ENTRY_OVERHEAD + delta.length;
+            return (keyframe == null) ? bytes : bytes + 8L * keyframe.length;
+        }
+    }
+
+    /**
+     * The recorded generations, oldest first; the first entry is always a keyframe.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * The memory budget in bytes.
+     */
+    private long budget;
+
+    /**
+     * The words of the newest entry, which the next delta is computed from.
+     */
+    private long[] newest;
+
+    /**
+     * The number of rows of the recorded grid.
+     */
+    private int rows;
+
+    /**
+     * The number of columns of the recorded grid.
+     */
+    private int cols;
+
+    /**
+     * Buffer the next delta is encoded into.
+     */
+    private byte[] encoded = new byte[256];
+
+    /**
+     * Estimated memory used by the entries in bytes.
+     */
+    private long bytes;
+
+    /**
+     * The number of entries since the newest keyframe.
+     */
+    private int sinceKeyframe;
+
+    /**
+     * Constructs an empty history.
+     *
+     * @param budget The memory budget in bytes.
+     */
+    public History(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Sets the memory budget, evicting the oldest generations if the history no longer fits.
+     *
+     * @param budget The memory budget in bytes.
+     */
+    public void setBudget(long budget) {
+        this.budget = budget;
+        evict();
+    }
+
+    /**
+     * Gets the memory budget.
+     *
+     * @return The memory budget in bytes.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Gets the estimated memory used by the history, including the copy of the newest generation.
+     *
+     * @return The number of bytes.
+     */
+    public long getMemoryUsage() {
+        return (newest == null) ? bytes : bytes + 8L * newest.length;
+    }
+
+    /**
+     * Gets the number of recorded generations.
+     *
+     * @return The number of generations.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the oldest recorded generation.
+     *
+     * @return The generation, or -1 if the history is empty.
+     */
+    public long getOldestGeneration() {
+        return entries.isEmpty() ? -1 : entries.get(0).generation;
+    }
+
+    /**
+     * Gets the newest recorded generation.
+     *
+     * @return The generation, or -1 if the history is empty.
+     */
+    public long getNewestGeneration() {
+        return entries.isEmpty() ? -1 : entries.get(entries.size() - 1).generation;
+    }
+
+    /**
+     * Forgets every recorded generation.
+     */
+    public void clear() {
+        entries.clear();
+        newest = null;
+        bytes = 0;
+        sinceKeyframe = 0;
+    }
+
+    /**
+     * Records the current generation of a grid. Generations recorded after it are kept if the grid still
+     * holds the recorded state, as after scrubbing back; otherwise the run took a different course and they
+     * are dropped.
+     *
+     * @param generation The number of the generation.
+     * @param cells      The grid.
+     */
+    public void record(long generation, BitGrid cells) {
+        if (newest != null && (cells.getRows() != rows || cells.getCols() != cols)) {
+            clear();
+        }
+        rows = cells.getRows();
+        cols = cells.getCols();
+        int at = find(generation);
+        if (at >= 0 && entries.get(at).generation == generation && entries.get(at).hash == cells.getHash()) {
+            return;
+        }
+        // drop the generations from this one on, and rebuild the words the next delta starts from
+        int keep = (at >= 0 && entries.get(at).generation == generation) ? at : at + 1;
+        if (keep < entries.size()) {
+            truncate(keep);
+        }
+
+        long[] words = cells.getWords();
+        int length = (newest == null || sinceKeyframe + 1 >= KEYFRAME_INTERVAL) ? -1 : encode(words);
+        // a delta this long costs more than a keyframe
+        if (length < 0 || length >= 8L * words.length) {
+            append(new Entry(generation, cells.getHash(), words.clone(), new byte[0]));
+        } else {
+            append(new Entry(generation, cells.getHash(), null, Arrays.copyOf(encoded, length)));
+        }
+        System.arraycopy(words, 0, newest, 0, words.length);
+        evict();
+    }
+
+    /**
+     * Encodes the cells that flipped since the newest entry into {@link #encoded}.
+     *
+     * @param words The words of the grid.
+     * @return The length of the delta, or -1 once it is longer than a keyframe.
+     */
+    private int encode(long[] words) {
+        int length = 0;
+        long last = 0;
+        for (int i = Arrays.mismatch(words, newest); i >= 0; i = nextMismatch(words, i + 1)) {
+            if (length >= 8L * words.length) {
+                return -1;
+            }
+            // a word holds at most 64 flipped cells of at most 10 bytes each
+            while (length + 10 * Long.SIZE > encoded.length) {
+                encoded = Arrays.copyOf(encoded, encoded.length * 2);
+            }
+            for (long flipped = words[i] ^ newest[i]; flipped != 0; flipped &= flipped - 1) {
+                long bit = ((long) i << 6) + Long.numberOfTrailingZeros(flipped);
+                long distance = bit - last;
+                last = bit;
+                while (distance >= 0x80) {
+                    encoded[length++] = (byte) (distance | 0x80);
+                    distance >>>= 7;
+                }
+                encoded[length++] = (byte) distance;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Finds the next word that differs from the newest entry.
+     *
+     * @param words The words of the grid.
+     * @param from  The index to start at.
+     * @return The index of the word, or -1 if every remaining word is the same.
+     */
+    private int nextMismatch(long[] words, int from) {
+        if (from >= words.length) {
+            return -1;
+        }
+        int i = Arrays.mismatch(words, from, words.length, newest, from, words.length);
+        return (i < 0) ? -1 : from + i;
+    }
+
+    /**
+     * Adds an entry and accounts for its memory.
+     *
+     * @param entry The entry.
+     */
+    private void append(Entry entry) {
+        if (newest == null) {
+            newest = new long[entry.keyframe.length];
+        }
+        entries.add(entry);
+        bytes += entry.bytes();
+        sinceKeyframe = (entry.keyframe != null) ? 0 : sinceKeyframe + 1;
+    }
+
+    /**
+     * Restores the newest recorded generation that is not after the given one.
+     *
+     * @param generation The generation to go to.
+     * @param cells      The grid to restore into; it must be the size of the recorded grid.
+     * @return The restored generation, or -1 if no generation that old is recorded.
+     */
+    public long restore(long generation, BitGrid cells) {
+        int at = find(generation);
+        if (at < 0 || cells.getRows() != rows || cells.getCols() != cols) {
+            return -1;
+        }
+        long[] words = new long[newest.length];
+        reconstruct(at, words);
+        cells.readWords(0, LongBuffer.wrap(words));
+        return entries.get(at).generation;
+    }
+
+    /**
+     * Rebuilds the words of an entry from the keyframe before it.
+     *
+     * @param at    The index of the entry.
+     * @param words Receives the words.
+     */
+    private void reconstruct(int at, long[] words) {
+        int keyframe = at;
+        while (entries.get(keyframe).keyframe == null) {
+            keyframe--;
+        }
+        System.arraycopy(entries.get(keyframe).keyframe, 0, words, 0, words.length);
+        for (int i = keyframe + 1; i <= at; i++) {
+            byte[] delta = entries.get(i).delta;
+            long bit = 0;
+            for (int j = 0; j < delta.length; ) {
+                long distance = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = delta[j++];
+                    distance |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                bit += distance;
+                words[(int) (bit >>> 6)] ^= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * Drops the entries from an index on.
+     *
+     * @param from The index of the first entry to drop.
+     */
+    private void truncate(int from) {
+        while (entries.size() > from) {
+            bytes -= entries.remove(entries.size() - 1).bytes();
+        }
+        if (entries.isEmpty()) {
+            clear();
+            return;
+        }
+        reconstruct(entries.size() - 1, newest);
+        sinceKeyframe = 0;
+        for (int i = entries.size() - 1; entries.get(i).keyframe == null; i--) {
+            sinceKeyframe++;
+        }
+    }
+
+    /**
+     * Evicts the oldest keyframes, with the generations depending on them, until the history fits its
+     * budget. The newest keyframe and the generations after it are always kept.
+     */
+    private void evict() {
+        while (getMemoryUsage() > budget) {
+            int next = 1;
+            while (next < entries.size() && entries.get(next).keyframe == null) {
+                next++;
+            }
+            if (next >= entries.size()) {
+                return;
+            }
+            List<Entry> evicted = entries.subList(0, next);
+            for (Entry entry : evicted) {
+                bytes -= entry.bytes();
+            }
+            evicted.clear();
+        }
+    }
+
+    /**
+     * Finds the newest entry that is not after a generation.
+     *
+     * @param generation The generation.
+     * @return The index of the entry, or -1 if every entry is after the generation.
+     */
+    private int find(long generation) {
+        int low = 0;
+        int high = entries.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (entries.get(mid).generation <= generation) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low - 1;
+    }
+}
@@ -0,0 +1,40 @@
+package engine;
+
+/**
+ * Strategy used to advance the cells of a grid. Engines may keep their own representation of the universe
+ * between calls, as long as the grid holds the result after every call.
+ */
+public interface LifeEngine {
+
+    /**
+     * The default engine, stepping the packed grid a single generation at a time.
+     */
+    LifeEngine PACKED = (cells, rule) -> {
+        cells.step(rule);
+        return 1;
+    };
+
+    /**
+     * Steps the packed grid a single generation at a time like {@link #PACKED}, evaluating whole rows with
+     * the wide kernel of {@link BitGrid#stepWide(Rule)} when every word is evaluated.
+     */
+    LifeEngine WIDE = (cells, rule) -> {
+        cells.stepWide(rule);
+        return 1;
+    };
+
+    /**
+     * Advances the cells.
+     *
+     * @param cells The cells to advance; they hold the new generation afterwards.
+     * @param rule  The rule to apply.
+     * @return The number of generations the cells were advanced by.
+     */
+    long advance(BitGrid cells, Rule rule);
+
+    /**
+     * Tells the engine that the cells were edited outside the engine, so any state it keeps is out of date.
+     */
+    default void invalidate() {
+    }
+}
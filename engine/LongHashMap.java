@@ -0,0 +1,170 @@
+package engine;
+
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to values, so looking up a key neither boxes it
+ * nor allocates an entry. Values must not be {@code null}.
+ *
+ * @param <V> The type of the values.
+ */
+public class LongHashMap<V> {
+
+    /**
+     * The keys, valid where the value in the same slot is not {@code null}.
+     */
+    private long[] keys;
+
+    /**
+     * The values, {@code null} for free slots.
+     */
+    private Object[] values;
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * Constructs an empty map.
+     */
+    public LongHashMap() {
+        keys = new long[16];
+        values = new Object[16];
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or {@code null} if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key   The key.
+     * @param value The value, not {@code null}.
+     */
+    public void put(long key, V value) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length - (keys.length >> 2)) {
+            resize(keys.length << 1);
+        }
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key.
+     */
+    public void remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == null) {
+            return;
+        }
+        values[i] = null;
+        size--;
+        // shift the following entries back so no lookup stops early at the freed slot
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        keys = new long[16];
+        values = new Object[16];
+        size = 0;
+    }
+
+    /**
+     * Passes every value to an action. The map must not be modified meanwhile.
+     *
+     * @param action The action to run on every value.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Moves every entry into tables of a new size.
+     *
+     * @param capacity The new number of slots, a power of two.
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Finds the preferred slot of a key.
+     *
+     * @param key  The key.
+     * @param mask The number of slots minus one.
+     * @return The slot the search for the key starts at.
+     */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
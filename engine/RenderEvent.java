@@ -0,0 +1,32 @@
+package engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event emitted for every snapshot the renderer paints.
+ */
+@Name("gameoflife.Render")
+@Label("Render")
+@Category("Game of Life")
+@Description("A frame painted from a snapshot of the simulation")
+@StackTrace(false)
+class RenderEvent extends jdk.jfr.Event {
+
+    /**
+     * The generation painted.
+     */
+    @Label("Generation")
+    long generation;
+
+    /**
+     * The time the frame took to paint.
+     */
+    @Label("Render Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long renderTime;
+}
@@ -0,0 +1,162 @@
+package engine;
+
+/**
+ * Immutable, compiled form of a life-like rule. The rule is parsed once into an 18-bit lookup table,
+ * so deciding the next state of a cell is a single shift and mask.
+ * <p>
+ * Two notations are accepted: the 18-character binary string used by the {@code Model:} field, where
+ * character {@code n} is {@code 1} if a dead cell with {@code n} neighbours is born and character
+ * {@code 9 + n} is {@code 1} if an alive cell with {@code n} neighbours survives, and the standard
+ * {@code B3/S23} notation.
+ */
+public final class Rule {
+
+    /**
+     * Conway's rule, B3/S23.
+     */
+    public static final Rule CONWAY = new Rule(1 << 3, (1 << 2) | (1 << 3));
+
+    /**
+     * Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     */
+    private final int birthMask;
+
+    /**
+     * Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     */
+    private final int surviveMask;
+
+    /**
+     * The 18-bit lookup table: the birth mask in bits 0-8 and the survive mask in bits 9-17.
+     */
+    private final int table;
+
+    /**
+     * Constructs a rule from its birth and survive masks.
+     *
+     * @param birthMask   Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     * @param surviveMask Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     */
+    public Rule(int birthMask, int surviveMask) {
+        this.birthMask = birthMask & 0x1FF;
+        this.surviveMask = surviveMask & 0x1FF;
+        this.table = this.birthMask | (this.surviveMask << 9);
+    }
+
+    /**
+     * Compiles a rule from either the 18-character binary notation or the {@code B3/S23} notation.
+     *
+     * @param text The rule to compile.
+     * @return The compiled rule.
+     * @throws IllegalArgumentException If the text is not a valid rule.
+     */
+    public static Rule parse(String text) {
+        String rule = text.trim();
+        if (rule.length() == 18 && rule.chars().allMatch(c -> c == '0' || c == '1')) {
+            int table = 0;
+            for (int i = 0; i < 18; i++) {
+                if (rule.charAt(i) == '1') {
+                    table |= 1 << i;
+                }
+            }
+            return new Rule(table & 0x1FF, table >>> 9);
+        }
+        String[] parts = rule.toUpperCase().split("/");
+        if (parts.length == 2 && parts[0].startsWith("B") && parts[1].startsWith("S")) {
+            return new Rule(parseCounts(parts[0].substring(1)), parseCounts(parts[1].substring(1)));
+        }
+        throw new IllegalArgumentException("Not a valid rule: " + text);
+    }
+
+    /**
+     * Converts a list of neighbour counts such as {@code 23} into a mask.
+     *
+     * @param counts The digits of the neighbour counts.
+     * @return The mask with bit {@code n} set for every digit {@code n}.
+     */
+    private static int parseCounts(String counts) {
+        int mask = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            char c = counts.charAt(i);
+            if (c < '0' || c > '8') {
+                throw new IllegalArgumentException("Not a valid neighbour count: " + c);
+            }
+            mask |= 1 << (c - '0');
+        }
+        return mask;
+    }
+
+    /**
+     * Looks up the next state of a cell.
+     *
+     * @param alive      Whether the cell is currently alive.
+     * @param neighbours The number of living neighbours.
+     * @return {@code true} if the cell is alive in the next generation.
+     */
+    public boolean next(boolean alive, int neighbours) {
+        return ((table >>> (alive ? neighbours + 9 : neighbours)) & 1) != 0;
+    }
+
+    /**
+     * Gets the birth mask.
+     *
+     * @return Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     */
+    public int getBirthMask() {
+        return birthMask;
+    }
+
+    /**
+     * Gets the survive mask.
+     *
+     * @return Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     */
+    public int getSurviveMask() {
+        return surviveMask;
+    }
+
+    /**
+     * Formats the rule in the 18-character binary notation of the {@code Model:} field.
+     *
+     * @return The binary rule string.
+     */
+    public String toBinaryString() {
+        StringBuilder sb = new StringBuilder(18);
+        for (int i = 0; i < 18; i++) {
+            sb.append(((table >>> i) & 1) != 0 ? '1' : '0');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats the rule in the {@code B3/S23} notation.
+     *
+     * @return The rule string.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("B");
+        for (int n = 0; n <= 8; n++) {
+            if ((birthMask & (1 << n)) != 0) {
+                sb.append(n);
+            }
+        }
+        sb.append("/S");
+        for (int n = 0; n <= 8; n++) {
+            if ((surviveMask & (1 << n)) != 0) {
+                sb.append(n);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Rule && ((Rule) o).table == table;
+    }
+
+    @Override
+    public int hashCode() {
+        return table;
+    }
+}
@@ -0,0 +1,501 @@
+package engine;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Sweeps many rules at once and classifies how each behaves. Every rule runs on the same few random soups
+ * on a small grid, and every soup stops as soon as its behaviour is known: when it dies out, repeats an
+ * earlier generation, or grows to twice its starting population. Soups still changing after the generation
+ * limit count as chaotic. The rules are spread over the cores in chunks, each chunk reusing one grid, so
+ * the whole space of 2^18 rules is swept in minutes.
+ * <p>
+ * Usage: {@code java engine.RuleSweep [options]}; run it with an invalid option to list the options. The
+ * results are printed as comma-separated values, one rule per line.
+ */
+public class RuleSweep {
+
+    /**
+     * How a rule evolves random soups.
+     */
+    public enum Behaviour {
+
+        /**
+         * Every cell dies.
+         */
+        DIES,
+
+        /**
+         * The soup settles into a still life.
+         */
+        STABLE,
+
+        /**
+         * The soup settles into a cycle longer than one generation.
+         */
+        OSCILLATES,
+
+        /**
+         * The population doubles.
+         */
+        GROWS,
+
+        /**
+         * The soup is still changing after the generation limit.
+         */
+        CHAOTIC
+    }
+
+    /**
+     * The classification of a rule over every soup.
+     */
+    public static final class Result {
+
+        /**
+         * The rule.
+         */
+        private final Rule rule;
+
+        /**
+         * The behaviour of most soups.
+         */
+        private final Behaviour behaviour;
+
+        /**
+         * The longest cycle the soups settled into.
+         */
+        private final int period;
+
+        /**
+         * The mean number of generations run before the behaviour was known.
+         */
+        private final double generations;
+
+        /**
+         * The mean fraction of living cells when the soups stopped.
+         */
+        private final double density;
+
+        /**
+         * Constructs a result.
+         *
+         * @param rule        The rule.
+         * @param behaviour   The behaviour of most soups.
+         * @param period      The longest cycle the soups settled into.
+         * @param generations The mean number of generations run.
+         * @param density     The mean fraction of living cells when the soups stopped.
+         */
+        Result(Rule rule, Behaviour behaviour, int period, double generations, double density) {
+            this.rule = rule;
+            this.behaviour = behaviour;
+            this.period = period;
+            this.generations = generations;
+            this.density = density;
+        }
+
+        /**
+         * Gets the rule.
+         *
+         * @return The rule.
+         */
+        public Rule getRule() {
+            return rule;
+        }
+
+        /**
+         * Gets the behaviour of most soups; ties go to the livelier behaviour.
+         *
+         * @return The behaviour.
+         */
+        public Behaviour getBehaviour() {
+            return behaviour;
+        }
+
+        /**
+         * Gets the longest cycle the soups settled into.
+         *
+         * @return The period, 1 for still lives, 0 if no soup settled into a cycle.
+         */
+        public int getPeriod() {
+            return period;
+        }
+
+        /**
+         * Gets the mean number of generations run before the behaviour of a soup was known.
+         *
+         * @return The number of generations.
+         */
+        public double getGenerations() {
+            return generations;
+        }
+
+        /**
+         * Gets the mean fraction of living cells when the soups stopped.
+         *
+         * @return The density, from 0 to 1.
+         */
+        public double getDensity() {
+            return density;
+        }
+    }
+
+    /**
+     * Help printed for invalid arguments.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java engine.RuleSweep [options]",
+            "  --rules LIST        all, or rules in B3/S23 or binary notation separated by commas (default all)",
+            "  --soups N           random soups run by every rule (default 4)",
+            "  --size N            width and height of the grid (default 64)",
+            "  --generations N     generations after which a changing soup counts as chaotic (default 256)",
+            "  --density D         fraction of living cells in the soups (default 0.25)",
+            "  --seed S            seed of the first soup, the others following on (default 0)",
+            "  --threads N         threads sweeping the rules (default: the number of processors)",
+            "  --output FILE       write the results to a file instead of stdout");
+
+    /**
+     * The number of rules, one for every 18-bit table.
+     */
+    public static final int RULE_COUNT = 1 << 18;
+
+    /**
+     * Number of rules a task sweeps on the same grid.
+     */
+    private static final int CHUNK = 64;
+
+    /**
+     * The longest cycle detected; longer cycles count as chaotic.
+     */
+    private static final int MAX_PERIOD = 32;
+
+    /**
+     * Generations run before a soup can count as growing, so rules that flash the whole grid on and off are
+     * recognised as oscillating first.
+     */
+    private static final int GROWTH_WARMUP = 16;
+
+    /**
+     * The number of random soups every rule runs.
+     */
+    private int soups = 4;
+
+    /**
+     * The width and height of the grid.
+     */
+    private int size = 64;
+
+    /**
+     * The generations after which a changing soup counts as chaotic.
+     */
+    private int generations = 256;
+
+    /**
+     * The fraction of living cells in the soups.
+     */
+    private double density = Soup.DEFAULT_DENSITY;
+
+    /**
+     * The seed of the first soup.
+     */
+    private long seed;
+
+    /**
+     * The number of threads sweeping the rules.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Set to stop a running sweep.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Runs a sweep from the command line.
+     *
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        RuleSweep sweep = new RuleSweep();
+        List<Rule> rules;
+        Path output = null;
+        try {
+            String list = "all";
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                String value = (i + 1 < args.length) ? args[++i] : null;
+                if (value == null) {
+                    throw new IllegalArgumentException(option + " needs a value");
+                }
+                switch (option) {
+                    case "--rules" -> list = value;
+                    case "--soups" -> sweep.setSoups(Integer.parseInt(value));
+                    case "--size" -> sweep.setSize(Integer.parseInt(value));
+                    case "--generations" -> sweep.setGenerations(Integer.parseInt(value));
+                    case "--density" -> sweep.setDensity(Double.parseDouble(value));
+                    case "--seed" -> sweep.setSeed(Long.parseLong(value));
+                    case "--threads" -> sweep.setThreads(Integer.parseInt(value));
+                    case "--output" -> output = Path.of(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+            rules = parseRules(list);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = sweep.run(rules, null);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        try (PrintWriter out = (output == null)
+                ? new PrintWriter(System.out)
+                : new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.US_ASCII))) {
+            out.println("rule,binary,behaviour,period,generations,density");
+            for (Result result : results) {
+                out.printf(Locale.ROOT, "%s,%s,%s,%d,%.1f,%.4f%n", result.getRule(),
+                        result.getRule().toBinaryString(), result.getBehaviour(), result.getPeriod(),
+                        result.getGenerations(), result.getDensity());
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        Map<Behaviour, Integer> counts = new EnumMap<>(Behaviour.class);
+        results.forEach(result -> counts.merge(result.getBehaviour(), 1, Integer::sum));
+        System.err.printf(Locale.ROOT, "%d rules in %.1f s (%.0f rules/s): %s%n", results.size(), seconds,
+                results.size() / seconds, counts);
+    }
+
+    /**
+     * Parses a list of rules.
+     *
+     * @param text {@code all}, or rules in {@code B3/S23} or binary notation separated by commas.
+     * @return The rules.
+     * @throws IllegalArgumentException If a rule is not valid.
+     */
+    public static List<Rule> parseRules(String text) {
+        if (text.trim().equalsIgnoreCase("all")) {
+            List<Rule> rules = new ArrayList<>(RULE_COUNT);
+            for (int table = 0; table < RULE_COUNT; table++) {
+                rules.add(new Rule(table & 0x1FF, table >>> 9));
+            }
+            return rules;
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (String rule : text.split(",")) {
+            if (!rule.isBlank()) {
+                rules.add(Rule.parse(rule));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Sets the number of random soups every rule runs.
+     *
+     * @param soups The number of soups, at least 1.
+     */
+    public void setSoups(int soups) {
+        if (soups <= 0) {
+            throw new IllegalArgumentException("The number of soups must be positive: " + soups);
+        }
+        this.soups = soups;
+    }
+
+    /**
+     * Sets the width and height of the grid.
+     *
+     * @param size The size, at least 1.
+     */
+    public void setSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size must be positive: " + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Sets the generations after which a changing soup counts as chaotic.
+     *
+     * @param generations The number of generations, at least 1.
+     */
+    public void setGenerations(int generations) {
+        if (generations <= 0) {
+            throw new IllegalArgumentException("The number of generations must be positive: " + generations);
+        }
+        this.generations = generations;
+    }
+
+    /**
+     * Sets the fraction of living cells in the soups.
+     *
+     * @param density The density, from 0 to 1.
+     */
+    public void setDensity(double density) {
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException("The density must be between 0 and 1: " + density);
+        }
+        this.density = density;
+    }
+
+    /**
+     * Sets the seed of the first soup; soup {@code i} uses the seed plus {@code i}.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of threads sweeping the rules.
+     *
+     * @param threads The number of threads, at least 1.
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Stops a running sweep; the rules not swept yet are left out of its results.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Sweeps rules. The chunks of rules run on a pool of their own, since the work is bound by the processors
+     * and gains nothing from more threads than cores.
+     *
+     * @param rules    The rules to sweep.
+     * @param listener Receives every result as soon as it is known, on the threads of the sweep, or
+     *                 {@code null}.
+     * @return The results of the rules swept, in the order of the rules.
+     */
+    public List<Result> run(List<Rule> rules, Consumer<Result> listener) {
+        cancelled = false;
+        long[][] soupWords = new long[soups][];
+        for (int i = 0; i < soups; i++) {
+            BitGrid cells = new BitGrid(size, size);
+            new Soup(seed + i, density).fill(cells);
+            soupWords[i] = cells.getWords().clone();
+        }
+        Result[] results = new Result[rules.size()];
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < rules.size(); from += CHUNK) {
+            int start = from;
+            int end = Math.min(rules.size(), from + CHUNK);
+            chunks.add(() -> {
+                BitGrid cells = new BitGrid(size, size);
+                cells.setIncremental(true);
+                CycleDetector detector = new CycleDetector(MAX_PERIOD);
+                for (int i = start; i < end && !cancelled; i++) {
+                    results[i] = classify(rules.get(i), cells, detector, soupWords);
+                    if (listener != null) {
+                        listener.accept(results[i]);
+                    }
+                }
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (Future<Void> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return Arrays.stream(results).filter(result -> result != null).toList();
+    }
+
+    /**
+     * Runs a rule on every soup and combines the behaviours.
+     *
+     * @param rule      The rule.
+     * @param cells     A grid of the size of the soups, overwritten.
+     * @param detector  A detector, reset for every soup.
+     * @param soupWords The words of every soup.
+     * @return The result.
+     */
+    private Result classify(Rule rule, BitGrid cells, CycleDetector detector, long[][] soupWords) {
+        int[] counts = new int[Behaviour.values().length];
+        int period = 0;
+        long totalGenerations = 0;
+        double totalDensity = 0;
+        // without births on no neighbours, an empty grid stays empty
+        boolean emptyStays = (rule.getBirthMask() & 1) == 0;
+        double cellCount = (double) size * size;
+        for (long[] soup : soupWords) {
+            cells.readWords(0, LongBuffer.wrap(soup));
+            detector.reset();
+            detector.record(0, cells.getHash());
+            long growth = Math.max(1, 2 * cells.population());
+            Behaviour behaviour = Behaviour.CHAOTIC;
+            int generation = 0;
+            while (generation < generations) {
+                cells.step(rule);
+                generation++;
+                long population = cells.population();
+                if (population == 0 && emptyStays) {
+                    behaviour = Behaviour.DIES;
+                    break;
+                }
+                if (detector.record(generation, cells.getHash())) {
+                    int cycle = (int) detector.getPeriod();
+                    behaviour = (cycle > 1) ? Behaviour.OSCILLATES
+                            : (population == 0) ? Behaviour.DIES : Behaviour.STABLE;
+                    if (cycle > 1) {
+                        period = Math.max(period, cycle);
+                    } else if (population > 0) {
+                        period = Math.max(period, 1);
+                    }
+                    break;
+                }
+                if (generation >= GROWTH_WARMUP && population >= growth) {
+                    behaviour = Behaviour.GROWS;
+                    break;
+                }
+            }
+            counts[behaviour.ordinal()]++;
+            totalGenerations += generation;
+            totalDensity += cells.population() / cellCount;
+        }
+        Behaviour majority = Behaviour.DIES;
+        for (Behaviour behaviour : Behaviour.values()) {
+            if (counts[behaviour.ordinal()] >= counts[majority.ordinal()]) {
+                majority = behaviour;
+            }
+        }
+        return new Result(rule, majority, period, (double) totalGenerations / soupWords.length,
+                totalDensity / soupWords.length);
+    }
+}
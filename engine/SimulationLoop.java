@@ -0,0 +1,398 @@
+package engine;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs the simulation on its own thread and publishes generations as snapshots. The thread that renders
+ * takes the newest snapshot whenever it is ready for a frame; snapshots it was too slow for are dropped,
+ * and their changes are carried over to the next one. A {@link FramePacer} decides how many steps run
+ * between two snapshots.
+ * <p>
+ * The cells must only be touched on the simulation thread. Other threads hand edits over with
+ * {@link #submit(Runnable)}, which runs them between two generations, and reads with {@link #read(Runnable)}.
+ */
+public class SimulationLoop {
+
+    /**
+     * The number of frames displayed per second.
+     */
+    private static final int TARGET_FPS = 60;
+
+    /**
+     * Task publishing the current generation again without editing it.
+     */
+    private static final Runnable REFRESH = () -> {
+    };
+
+    /**
+     * A task that only reads the cells, run without the bookkeeping of an edit.
+     */
+    private static final class Read implements Runnable {
+
+        /**
+         * The task.
+         */
+        private final Runnable task;
+
+        /**
+         * Wraps a task.
+         *
+         * @param task The task.
+         */
+        Read(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
+    /**
+     * Supplies the cells to publish.
+     */
+    private final Supplier<BitGrid> cells;
+
+    /**
+     * Edits waiting to run on the simulation thread.
+     */
+    private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    /**
+     * The newest snapshot, until the renderer takes it.
+     */
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+
+    /**
+     * A snapshot the renderer is done with, reused for the next one.
+     */
+    private final AtomicReference<Snapshot> spare = new AtomicReference<>();
+
+    /**
+     * Sizes the batches of steps between two snapshots.
+     */
+    private final FramePacer pacer = new FramePacer(TARGET_FPS);
+
+    /**
+     * Records the time and figures of every step and frame.
+     */
+    private final Telemetry telemetry = new Telemetry();
+
+    /**
+     * The simulation thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Advances the cells and returns the number of generations advanced, while running.
+     */
+    private LongSupplier stepper;
+
+    /**
+     * Receives the number of every generation computed or edited, or {@code null}.
+     */
+    private LongConsumer recorder;
+
+    /**
+     * The generation the run stops at.
+     */
+    private long stepLimit;
+
+    /**
+     * Detects when the run has settled, or {@code null} if the run goes on until the limit.
+     */
+    private CycleDetector detector;
+
+    /**
+     * The first generation of the cycle the run settled in.
+     */
+    private long cycleStart;
+
+    /**
+     * The period of the cycle the run settled in, 0 while it has not settled.
+     */
+    private long period;
+
+    /**
+     * A flag indicating whether the simulation is running.
+     */
+    private volatile boolean running;
+
+    /**
+     * The number of the current generation.
+     */
+    private volatile long generation;
+
+    /**
+     * When the last snapshot was published.
+     */
+    private long lastPublish;
+
+    /**
+     * When the renderer took the snapshot it is rendering.
+     */
+    private long takenAt;
+
+    /**
+     * Constructs the loop and starts its thread, idle until a run is started.
+     *
+     * @param cells Supplies the cells to publish; called on the simulation thread only.
+     */
+    public SimulationLoop(Supplier<BitGrid> cells) {
+        this.cells = cells;
+        this.thread = new Thread(this::run, "simulation");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Runs an edit on the simulation thread between two generations, then publishes the result.
+     *
+     * @param task The edit to run.
+     */
+    public void submit(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Runs a task that only reads the cells on the simulation thread between two generations. Unlike an edit,
+     * it leaves the run alone: cycle detection carries on, the history records nothing and no snapshot is
+     * published, so the game can be polled as often as wanted.
+     *
+     * @param task The read to run.
+     */
+    public void read(Runnable task) {
+        tasks.add(new Read(task));
+    }
+
+    /**
+     * Publishes the current generation again, for instance after the renderer changed how cells are drawn.
+     */
+    public void refresh() {
+        submit(REFRESH);
+    }
+
+    /**
+     * Gets the pacer sizing the batches of steps, whose target rate may be changed at any time.
+     *
+     * @return The pacer.
+     */
+    public FramePacer getPacer() {
+        return pacer;
+    }
+
+    /**
+     * Gets the telemetry of the steps and frames.
+     *
+     * @return The telemetry.
+     */
+    public Telemetry getTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * Sets what is told about every generation computed or edited, such as a {@link History}. It is called
+     * on the simulation thread, with the number of the generation the cells now hold.
+     *
+     * @param recorder Receives the number of the generation, or {@code null}.
+     */
+    public void setRecorder(LongConsumer recorder) {
+        submit(() -> this.recorder = recorder);
+    }
+
+    /**
+     * Starts or restarts a run, paced by the target rate of the pacer. The run stops early once the cells
+     * repeat one of the recent generations, since nothing new can happen after that.
+     *
+     * @param stepLimit The generation the run stops at.
+     * @param maxPeriod The longest cycle to detect, 0 to always run until the limit.
+     * @param stepper   Advances the cells on the simulation thread and returns the number of generations advanced.
+     */
+    public void start(long stepLimit, int maxPeriod, LongSupplier stepper) {
+        submit(() -> {
+            this.stepLimit = stepLimit;
+            this.stepper = stepper;
+            detector = (maxPeriod > 0) ? new CycleDetector(maxPeriod) : null;
+            telemetry.reset();
+            running = true;
+        });
+    }
+
+    /**
+     * Stops the run after the current generation.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Checks whether a run is in progress.
+     *
+     * @return {@code true} if the simulation is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the number of the current generation.
+     *
+     * @return The generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Sets the number of the current generation; must be called on the simulation thread, from a submitted task.
+     *
+     * @param generation The generation.
+     */
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Takes the newest snapshot, if one was published since the last call.
+     *
+     * @return The snapshot, or {@code null}.
+     */
+    public Snapshot takeSnapshot() {
+        takenAt = System.nanoTime();
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Hands a rendered snapshot back so its memory is reused.
+     *
+     * @param snapshot The snapshot the renderer is done with.
+     */
+    public void recycle(Snapshot snapshot) {
+        long nanos = System.nanoTime() - takenAt;
+        pacer.recordRender(nanos);
+        telemetry.recordRender(snapshot.getGeneration(), nanos);
+        spare.set(snapshot);
+    }
+
+    /**
+     * Body of the simulation thread.
+     */
+    private void run() {
+        long nextStep = System.nanoTime();
+        while (true) {
+            try {
+                Runnable task;
+                if (running) {
+                    task = tasks.poll(Math.max(0, nextStep - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } else {
+                    task = tasks.take();
+                    nextStep = System.nanoTime();
+                }
+                if (task instanceof Read) {
+                    task.run();
+                    continue;
+                }
+                if (task != null) {
+                    task.run();
+                    if (task != REFRESH) {
+                        // the cells may have been edited, so the recorded generations no longer lead here
+                        period = 0;
+                        if (detector != null) {
+                            detector.reset();
+                            detector.record(generation, cells.get().getHash());
+                        }
+                        if (recorder != null) {
+                            recorder.accept(generation);
+                        }
+                    }
+                    publish(true);
+                    continue;
+                }
+                long start = System.nanoTime();
+                int batch = pacer.batch();
+                int steps = 0;
+                long advanced = 0;
+                while (steps < batch && running) {
+                    long allocated = Telemetry.allocatedBytes();
+                    long stepStart = System.nanoTime();
+                    long step = stepper.getAsLong();
+                    long stepNanos = System.nanoTime() - stepStart;
+                    generation += step;
+                    telemetry.recordStep(generation, step, stepNanos, cells.get(),
+                            Telemetry.allocatedBytes() - allocated);
+                    advanced += step;
+                    steps++;
+                    if (recorder != null) {
+                        recorder.accept(generation);
+                    }
+                    if (generation >= stepLimit) {
+                        running = false;
+                    } else if (detector != null) {
+                        detectCycle(step);
+                    }
+                }
+                pacer.recordStep(System.nanoTime() - start, steps, advanced);
+                publish(!running);
+                // never build up a backlog of steps when a batch takes longer than its share of the rate
+                nextStep = Math.max(nextStep + pacer.delay(advanced), System.nanoTime());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                running = false;
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Records the current generation and stops the run if it repeats a recent one.
+     *
+     * @param step The number of generations the last step advanced.
+     */
+    private void detectCycle(long step) {
+        if (step != 1) {
+            // a jump of several generations only proves that the period divides the jump
+            detector.reset();
+        }
+        if (detector.record(generation, cells.get().getHash())) {
+            cycleStart = detector.getStart();
+            period = detector.getPeriod();
+            running = false;
+        }
+    }
+
+    /**
+     * Publishes the current generation, unless the renderer has not taken the last one and it is too recent.
+     *
+     * @param force Whether to publish regardless.
+     */
+    private void publish(boolean force) {
+        long now = System.nanoTime();
+        if (!force && latest.get() != null && now - lastPublish < pacer.getFrameNanos()) {
+            return;
+        }
+        BitGrid source = cells.get();
+        Snapshot snapshot = spare.getAndSet(null);
+        if (snapshot == null || !snapshot.fits(source.getRows(), source.getCols())) {
+            snapshot = new Snapshot(source.getRows(), source.getCols());
+        }
+        Snapshot dropped = latest.getAndSet(null);
+        if (dropped != null) {
+            // the renderer never saw this one, so its changes still have to be painted
+            snapshot.getCells().mergeDirty(dropped.getCells());
+        }
+        snapshot.capture(source, generation, cycleStart, period);
+        latest.set(snapshot);
+        if (dropped != null) {
+            // the renderer never took it, so it is free to hold the next generation
+            spare.compareAndSet(null, dropped);
+        }
+        lastPublish = now;
+    }
+}
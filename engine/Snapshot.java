@@ -0,0 +1,100 @@
+package engine;
+
+/**
+ * A generation published by the simulation for rendering. The cells are a private copy owned by the snapshot,
+ * so the simulation can keep stepping while the snapshot is painted.
+ */
+public final class Snapshot {
+
+    /**
+     * Copy of the cells of the generation.
+     */
+    private final BitGrid cells;
+
+    /**
+     * The number of the generation.
+     */
+    private long generation;
+
+    /**
+     * The first generation of the cycle the run settled in.
+     */
+    private long cycleStart;
+
+    /**
+     * The period of the cycle the run settled in, 0 while it has not settled.
+     */
+    private long period;
+
+    /**
+     * Constructs an empty snapshot for a grid of the given size.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     */
+    public Snapshot(int rows, int cols) {
+        this.cells = new BitGrid(rows, cols);
+    }
+
+    /**
+     * Copies a generation into the snapshot, along with the words that changed since the last copy.
+     *
+     * @param source     The cells to copy.
+     * @param generation The number of the generation.
+     * @param cycleStart The first generation of the cycle the run settled in.
+     * @param period     The period of the cycle the run settled in, 0 while it has not settled.
+     */
+    public void capture(BitGrid source, long generation, long cycleStart, long period) {
+        cells.copyFrom(source);
+        this.generation = generation;
+        this.cycleStart = cycleStart;
+        this.period = period;
+    }
+
+    /**
+     * Checks whether the snapshot can hold a grid of the given size.
+     *
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @return {@code true} if the sizes match.
+     */
+    boolean fits(int rows, int cols) {
+        return cells.getRows() == rows && cells.getCols() == cols;
+    }
+
+    /**
+     * Gets the cells of the generation. They must not be modified.
+     *
+     * @return The cells.
+     */
+    public BitGrid getCells() {
+        return cells;
+    }
+
+    /**
+     * Gets the number of the generation.
+     *
+     * @return The generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the first generation of the cycle the run settled in.
+     *
+     * @return The generation, meaningful only if the period is not 0.
+     */
+    public long getCycleStart() {
+        return cycleStart;
+    }
+
+    /**
+     * Gets the period of the cycle the run settled in; 1 for a still life or an empty grid.
+     *
+     * @return The period, 0 while the run has not settled.
+     */
+    public long getPeriod() {
+        return period;
+    }
+}
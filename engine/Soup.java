@@ -0,0 +1,223 @@
+package engine;
+
+import java.nio.LongBuffer;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A reproducible random soup: every cell is alive with a given probability, drawn from a seed so the same
+ * seed and density always give the same cells on a grid of the same size.
+ * <p>
+ * The cells are drawn 64 at a time. The density is rounded to {@value #PRECISION} binary digits, and a word
+ * whose bits are each set with that probability is built from one random word per digit, from the lowest
+ * set digit up: a 1 digit ORs the next random word in, which halves the chance of a clear bit, and a 0 digit
+ * ANDs it in, which halves the chance of a set bit. A quarter of the cells alive thus costs two random
+ * words per 64 cells. The grid is filled in bands of {@value #BAND_ROWS} rows, each drawing from its own
+ * generator split from the seed, so the bands can be filled in parallel and the soup does not depend on how
+ * many threads filled it.
+ */
+public class Soup {
+
+    /**
+     * The fraction of living cells of the Random button.
+     */
+    public static final double DEFAULT_DENSITY = 0.25;
+
+    /**
+     * Number of binary digits the density is rounded to.
+     */
+    private static final int PRECISION = 16;
+
+    /**
+     * Number of rows drawn from the same generator.
+     */
+    private static final int BAND_ROWS = 64;
+
+    /**
+     * Number of words below which a range of bands is filled directly instead of being split further.
+     */
+    private static final int MIN_TASK_WORDS = 16384;
+
+    /**
+     * The seed of the generators.
+     */
+    private final long seed;
+
+    /**
+     * The fraction of living cells.
+     */
+    private final double density;
+
+    /**
+     * The density as a fraction of {@code 2^PRECISION}.
+     */
+    private final int threshold;
+
+    /**
+     * Constructs a soup.
+     *
+     * @param seed    The seed of the generators.
+     * @param density The fraction of living cells, from 0 to 1.
+     * @throws IllegalArgumentException If the density is not between 0 and 1.
+     */
+    public Soup(long seed, double density) {
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException("The density must be between 0 and 1: " + density);
+        }
+        this.seed = seed;
+        this.density = density;
+        this.threshold = (int) Math.round(density * (1 << PRECISION));
+    }
+
+    /**
+     * Constructs a soup with a new seed, which is never negative so it can be passed on the command line.
+     *
+     * @param density The fraction of living cells, from 0 to 1.
+     * @return The soup.
+     * @throws IllegalArgumentException If the density is not between 0 and 1.
+     */
+    public static Soup random(double density) {
+        return new Soup(new SplittableRandom().nextLong() >>> 1, density);
+    }
+
+    /**
+     * Gets the seed of the generators.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the fraction of living cells.
+     *
+     * @return The density, from 0 to 1.
+     */
+    public double getDensity() {
+        return density;
+    }
+
+    /**
+     * Replaces every cell of a grid with the soup. The bands are filled on the pool of the grid, or on the
+     * common pool if the grid steps on the calling thread.
+     *
+     * @param cells The grid to fill.
+     */
+    public void fill(BitGrid cells) {
+        int wordsPerRow = cells.getWordsPerRow();
+        long[] words = new long[cells.getWords().length];
+        int bands = (cells.getRows() + BAND_ROWS - 1) / BAND_ROWS;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[bands];
+        for (int band = 0; band < bands; band++) {
+            randoms[band] = root.split();
+        }
+        FillTask task = new FillTask(words, randoms, 0, bands, BAND_ROWS * wordsPerRow);
+        if (words.length <= MIN_TASK_WORDS) {
+            task.compute();
+        } else {
+            ForkJoinPool pool = cells.getPool();
+            ((pool != null) ? pool : ForkJoinPool.commonPool()).invoke(task);
+        }
+        cells.readWords(0, LongBuffer.wrap(words));
+    }
+
+    /**
+     * Draws 64 cells, each alive with the probability of the soup.
+     *
+     * @param random The generator to draw from.
+     * @return The cells.
+     */
+    private long nextWord(SplittableRandom random) {
+        if (threshold == 0) {
+            return 0;
+        }
+        if (threshold == 1 << PRECISION) {
+            return -1L;
+        }
+        int digit = Integer.numberOfTrailingZeros(threshold);
+        long bits = random.nextLong();
+        for (digit++; digit < PRECISION; digit++) {
+            bits = ((threshold >>> digit & 1) != 0) ? bits | random.nextLong() : bits & random.nextLong();
+        }
+        return bits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "seed %d, density %s", seed, density);
+    }
+
+    /**
+     * Task filling a range of bands, split in halves while it is large enough to be worth sharing.
+     */
+    private class FillTask extends RecursiveAction {
+
+        /**
+         * Fork-join tasks are serializable and require serialVersionUID
+         */
+        private static final long serialVersionUID = -6080413375223371540L;
+
+        /**
+         * The words of the grid being filled.
+         */
+        private final long[] words;
+
+        /**
+         * The generator of every band.
+         */
+        private final transient SplittableRandom[] randoms;
+
+        /**
+         * The first band.
+         */
+        private final int from;
+
+        /**
+         * The band after the last band.
+         */
+        private final int to;
+
+        /**
+         * The number of words in a band.
+         */
+        private final int bandWords;
+
+        /**
+         * Constructs a task for a range of bands.
+         *
+         * @param words     The words of the grid being filled.
+         * @param randoms   The generator of every band.
+         * @param from      The first band.
+         * @param to        The band after the last band.
+         * @param bandWords The number of words in a band.
+         */
+        FillTask(long[] words, SplittableRandom[] randoms, int from, int to, int bandWords) {
+            this.words = words;
+            this.randoms = randoms;
+            this.from = from;
+            this.to = to;
+            this.bandWords = bandWords;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || (to - from) * bandWords <= MIN_TASK_WORDS) {
+                for (int band = from; band < to; band++) {
+                    SplittableRandom random = randoms[band];
+                    int end = Math.min(words.length, (band + 1) * bandWords);
+                    for (int index = band * bandWords; index < end; index++) {
+                        words[index] = nextWord(random);
+                    }
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FillTask(words, randoms, from, middle, bandWords),
+                        new FillTask(words, randoms, middle, to, bandWords));
+            }
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unbounded universe that only stores the 64x64 tiles holding living cells. Only tiles that changed in the
+ * last generation, and the tiles around them, are stepped, and tiles that are empty and stable are evicted,
+ * so memory and step cost follow the live activity instead of the area the pattern spans.
+ * <p>
+ * As an engine, it loads the cells of a grid once and stores the part of the universe inside the grid after
+ * every generation, so patterns keep evolving outside the grid. Rules where dead cells with no neighbours are
+ * born cannot live on an unbounded plane, and grids whose edges wrap around or mirror are no window of one, so
+ * both are stepped on the packed grid instead.
+ */
+public class SparseUniverse implements LifeEngine {
+
+    /**
+     * A square of 64x64 cells, one word per row.
+     */
+    private static final class Tile {
+
+        /**
+         * The column of the tile, in tiles.
+         */
+        final int tx;
+
+        /**
+         * The row of the tile, in tiles.
+         */
+        final int ty;
+
+        /**
+         * The current generation, bit {@code c} of word {@code r} is the cell at row {@code r}, column {@code c}.
+         */
+        long[] rows = new long[64];
+
+        /**
+         * Buffer the next generation is written into.
+         */
+        long[] next = new long[64];
+
+        /**
+         * A flag indicating whether the tile changed in the last generation.
+         */
+        boolean changed;
+
+        /**
+         * The generation the tile was last queued for stepping in.
+         */
+        long queued = -1;
+
+        /**
+         * Constructs an empty tile.
+         *
+         * @param tx The column of the tile, in tiles.
+         * @param ty The row of the tile, in tiles.
+         */
+        Tile(int tx, int ty) {
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        /**
+         * Checks whether the tile holds no living cells.
+         *
+         * @return {@code true} if every cell is dead.
+         */
+        boolean isEmpty() {
+            for (long row : rows) {
+                if (row != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Empty rows shared by every missing tile.
+     */
+    private static final long[] EMPTY = new long[64];
+
+    /**
+     * The allocated tiles, keyed by their position.
+     */
+    private final LongHashMap<Tile> tiles = new LongHashMap<>();
+
+    /**
+     * The tiles that changed in the last generation or were edited since.
+     */
+    private List<Tile> changed = new ArrayList<>();
+
+    /**
+     * The number of generations stepped.
+     */
+    private long generation;
+
+    /**
+     * The number of tiles stepped in the last generation.
+     */
+    private int steppedTiles;
+
+    /**
+     * A flag indicating whether the universe has to be reloaded from the grid.
+     */
+    private boolean stale = true;
+
+    /**
+     * The words of the grid the universe is stored into, reused between generations.
+     */
+    private long[] words;
+
+    /**
+     * Combines the position of a tile into a key.
+     *
+     * @param tx The column of the tile, in tiles.
+     * @param ty The row of the tile, in tiles.
+     * @return The key of the tile.
+     */
+    private static long key(int tx, int ty) {
+        return ((long) ty << 32) | (tx & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Checks whether a cell is alive.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return {@code true} if the cell is alive.
+     */
+    public boolean get(int row, int col) {
+        Tile tile = tiles.get(key(col >> 6, row >> 6));
+        return tile != null && (tile.rows[row & 63] & (1L << col)) != 0;
+    }
+
+    /**
+     * Sets a cell to alive or dead.
+     *
+     * @param row   The row of the cell.
+     * @param col   The column of the cell.
+     * @param alive Whether the cell should be alive.
+     */
+    public void set(int row, int col, boolean alive) {
+        long key = key(col >> 6, row >> 6);
+        Tile tile = tiles.get(key);
+        if (tile == null) {
+            if (!alive) {
+                return;
+            }
+            tile = new Tile(col >> 6, row >> 6);
+            tiles.put(key, tile);
+        }
+        if (alive) {
+            tile.rows[row & 63] |= 1L << col;
+        } else {
+            tile.rows[row & 63] &= ~(1L << col);
+        }
+        markChanged(tile);
+    }
+
+    /**
+     * Queues a tile for stepping in the next generation.
+     *
+     * @param tile The tile that changed.
+     */
+    private void markChanged(Tile tile) {
+        if (!tile.changed) {
+            tile.changed = true;
+            changed.add(tile);
+        }
+    }
+
+    /**
+     * Kills every cell.
+     */
+    public void clear() {
+        tiles.clear();
+        changed.clear();
+    }
+
+    /**
+     * Counts the living cells.
+     *
+     * @return The population.
+     */
+    public long population() {
+        long[] population = {0};
+        tiles.forEachValue(tile -> {
+            for (long row : tile.rows) {
+                population[0] += Long.bitCount(row);
+            }
+        });
+        return population[0];
+    }
+
+    /**
+     * Gets the number of allocated tiles.
+     *
+     * @return The number of tiles.
+     */
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Gets the number of tiles stepped in the last generation.
+     *
+     * @return The number of tiles.
+     */
+    public int getSteppedTiles() {
+        return steppedTiles;
+    }
+
+    /**
+     * Gets the number of generations stepped.
+     *
+     * @return The generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Computes the next generation.
+     *
+     * @param rule The rule to apply; it must not give birth to cells with no neighbours.
+     */
+    public void step(Rule rule) {
+        // queue the tiles that changed and the tiles around them
+        List<Tile> queue = new ArrayList<>();
+        for (Tile tile : changed) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    Tile neighbour = tiles.get(key(tile.tx + dx, tile.ty + dy));
+                    if (neighbour == null && borders(tile, dx, dy)) {
+                        neighbour = new Tile(tile.tx + dx, tile.ty + dy);
+                        tiles.put(key(neighbour.tx, neighbour.ty), neighbour);
+                    }
+                    if (neighbour != null && neighbour.queued != generation) {
+                        neighbour.queued = generation;
+                        queue.add(neighbour);
+                    }
+                }
+            }
+        }
+
+        int birthMask = rule.getBirthMask();
+        int surviveMask = rule.getSurviveMask();
+        for (Tile tile : queue) {
+            stepTile(tile, birthMask, surviveMask);
+        }
+
+        // publish the new generation, then evict the tiles that are empty and stable
+        List<Tile> nowChanged = new ArrayList<>();
+        for (Tile tile : queue) {
+            tile.changed = !Arrays.equals(tile.rows, tile.next);
+            long[] swap = tile.rows;
+            tile.rows = tile.next;
+            tile.next = swap;
+            if (tile.changed) {
+                nowChanged.add(tile);
+            } else if (tile.isEmpty()) {
+                tiles.remove(key(tile.tx, tile.ty));
+            }
+        }
+        changed = nowChanged;
+        steppedTiles = queue.size();
+        generation++;
+    }
+
+    /**
+     * Checks whether a tile has living cells on the border facing one of its neighbours.
+     *
+     * @param tile The tile.
+     * @param dx   The horizontal direction of the neighbour, -1, 0 or 1.
+     * @param dy   The vertical direction of the neighbour, -1, 0 or 1.
+     * @return {@code true} if cells may be born in the neighbour.
+     */
+    private static boolean borders(Tile tile, int dx, int dy) {
+        long columns = (dx < 0) ? 1L : (dx > 0) ? 1L << 63 : -1L;
+        if (dy < 0) {
+            return (tile.rows[0] & columns) != 0;
+        } else if (dy > 0) {
+            return (tile.rows[63] & columns) != 0;
+        }
+        for (long row : tile.rows) {
+            if ((row & columns) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the next generation of a tile into its second buffer.
+     *
+     * @param tile        The tile.
+     * @param birthMask   Bit {@code n} is set if a dead cell with {@code n} neighbours becomes alive.
+     * @param surviveMask Bit {@code n} is set if an alive cell with {@code n} neighbours stays alive.
+     */
+    private void stepTile(Tile tile, int birthMask, int surviveMask) {
+        long[] n = rowsOf(tile.tx, tile.ty - 1);
+        long[] s = rowsOf(tile.tx, tile.ty + 1);
+        long[] w = rowsOf(tile.tx - 1, tile.ty);
+        long[] e = rowsOf(tile.tx + 1, tile.ty);
+        long[] nw = rowsOf(tile.tx - 1, tile.ty - 1);
+        long[] ne = rowsOf(tile.tx + 1, tile.ty - 1);
+        long[] sw = rowsOf(tile.tx - 1, tile.ty + 1);
+        long[] se = rowsOf(tile.tx + 1, tile.ty + 1);
+        long[] c = tile.rows;
+        for (int r = 0; r < 64; r++) {
+            long a = (r > 0) ? c[r - 1] : n[63];
+            long aL = (r > 0) ? w[r - 1] : nw[63];
+            long aR = (r > 0) ? e[r - 1] : ne[63];
+            long b = (r < 63) ? c[r + 1] : s[0];
+            long bL = (r < 63) ? w[r + 1] : sw[0];
+            long bR = (r < 63) ? e[r + 1] : se[0];
+            tile.next[r] = BitGrid.evolve(aL, a, aR, w[r], c[r], e[r], bL, b, bR, birthMask, surviveMask);
+        }
+    }
+
+    /**
+     * Gets the current rows of a tile.
+     *
+     * @param tx The column of the tile, in tiles.
+     * @param ty The row of the tile, in tiles.
+     * @return The rows, all dead if the tile is not allocated.
+     */
+    private long[] rowsOf(int tx, int ty) {
+        Tile tile = tiles.get(key(tx, ty));
+        return (tile == null) ? EMPTY : tile.rows;
+    }
+
+    @Override
+    public void invalidate() {
+        stale = true;
+    }
+
+    @Override
+    public long advance(BitGrid cells, Rule rule) {
+        if ((rule.getBirthMask() & 1) != 0 || cells.getBoundary() != Boundary.DEAD) {
+            stale = true;
+            cells.step(rule);
+            return 1;
+        }
+        if (stale) {
+            load(cells);
+        }
+        step(rule);
+        store(cells, 1);
+        return 1;
+    }
+
+    /**
+     * Replaces the universe with the living cells of a grid.
+     *
+     * @param cells The grid to load.
+     */
+    public void load(BitGrid cells) {
+        clear();
+        long[] words = cells.getWords();
+        int wordsPerRow = cells.getWordsPerRow();
+        for (int i = 0; i < cells.getRows(); i++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word = words[i * wordsPerRow + w];
+                if (word == 0) {
+                    continue;
+                }
+                long key = key(w, i >> 6);
+                Tile tile = tiles.get(key);
+                if (tile == null) {
+                    tile = new Tile(w, i >> 6);
+                    tiles.put(key, tile);
+                    markChanged(tile);
+                }
+                tile.rows[i & 63] = word;
+            }
+        }
+        stale = false;
+    }
+
+    /**
+     * Stores the part of the universe inside the grid into the grid, as a generation a number of generations
+     * after the one the grid holds. Tiles and words share their 64-cell alignment, so every row of a tile is
+     * copied as a single word.
+     *
+     * @param cells       The grid to write.
+     * @param generations The number of generations the universe advanced since the grid was last written.
+     */
+    public void store(BitGrid cells, long generations) {
+        int rows = cells.getRows();
+        int wordsPerRow = cells.getWordsPerRow();
+        int cols = cells.getCols();
+        if (words == null || words.length != cells.getWords().length) {
+            words = new long[cells.getWords().length];
+        } else {
+            Arrays.fill(words, 0L);
+        }
+        tiles.forEachValue(tile -> {
+            if (tile.tx < 0 || tile.tx >= wordsPerRow || tile.ty < 0 || tile.ty * 64 >= rows) {
+                return;
+            }
+            int tail = cols - tile.tx * 64;
+            long mask = (tail >= 64) ? -1L : (1L << tail) - 1;
+            for (int r = 0; r < 64 && tile.ty * 64 + r < rows; r++) {
+                words[(tile.ty * 64 + r) * wordsPerRow + tile.tx] = tile.rows[r] & mask;
+            }
+        });
+        cells.advanceTo(words, generations);
+    }
+}
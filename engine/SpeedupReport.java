@@ -0,0 +1,73 @@
+package engine;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how parallel stepping scales with the number of cores and prints the speedup curve.
+ * <p>
+ * Usage: {@code java engine.SpeedupReport [size] [generations] [threads]}, by default a 4096x4096 random
+ * soup stepped for 50 generations at 1, 2, 4, ... threads up to the number of available processors.
+ */
+public class SpeedupReport {
+
+    /**
+     * Runs the report.
+     *
+     * @param args Optional grid size, number of generations and maximum number of threads.
+     */
+    public static void main(String[] args) {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+        int generations = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+        int cores = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%dx%d grid, %d generations, %d cores%n", size, size, generations, cores);
+        System.out.printf("%8s %14s %16s %9s %11s%n", "threads", "gens/sec", "cells/sec", "speedup", "efficiency");
+        double baseline = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            double gensPerSecond = measure(size, generations, threads);
+            if (threads == 1) {
+                baseline = gensPerSecond;
+            }
+            double speedup = gensPerSecond / baseline;
+            System.out.printf("%8d %14.1f %16.3e %8.2fx %10.0f%%%n", threads, gensPerSecond,
+                    gensPerSecond * size * size, speedup, 100 * speedup / threads);
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Steps a random soup on the given number of threads and measures the throughput.
+     *
+     * @param size        The width and height of the grid.
+     * @param generations The number of generations to time.
+     * @param threads     The number of threads.
+     * @return The number of generations per second.
+     */
+    private static double measure(int size, int generations, int threads) {
+        BitGrid grid = new BitGrid(size, size);
+        Random rand = new Random(42);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                grid.set(i, j, rand.nextInt(4) == 0);
+            }
+        }
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        grid.setPool(pool);
+        // warm up before timing
+        for (int i = 0; i < Math.max(5, generations / 5); i++) {
+            grid.step(Rule.CONWAY);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < generations; i++) {
+            grid.step(Rule.CONWAY);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (pool != null) {
+            pool.shutdown();
+        }
+        return generations / (elapsed / 1e9);
+    }
+}
@@ -0,0 +1,275 @@
+package engine;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Per-generation performance figures of a run: the time every step and every frame took, the cells
+ * evaluated, births, deaths, population and the bytes allocated. Every step and frame is emitted as a
+ * Flight Recorder event ({@code gameoflife.Generation} and {@code gameoflife.Render}), which costs next to
+ * nothing while no recording is running, and their durations are aggregated into latency histograms that
+ * can be read at any time.
+ * <p>
+ * Steps are recorded on the simulation thread and frames on the thread that renders; the figures may be
+ * read from any thread.
+ */
+public class Telemetry {
+
+    /**
+     * Counts the bytes allocated by each thread, or {@code null} if the JVM cannot tell.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /**
+     * The time over which the rate of generations is measured, in nanoseconds.
+     */
+    private static final long RATE_WINDOW = 500_000_000L;
+
+    /**
+     * Durations of the steps in nanoseconds.
+     */
+    private final LatencyHistogram stepLatency = new LatencyHistogram();
+
+    /**
+     * Durations of the frames in nanoseconds.
+     */
+    private final LatencyHistogram renderLatency = new LatencyHistogram();
+
+    /**
+     * The generation reached by the last step.
+     */
+    private volatile long generation;
+
+    /**
+     * The number of cells the last step evaluated.
+     */
+    private volatile long evaluated;
+
+    /**
+     * The number of cells born in the last step.
+     */
+    private volatile long births;
+
+    /**
+     * The number of cells that died in the last step.
+     */
+    private volatile long deaths;
+
+    /**
+     * The number of living cells after the last step.
+     */
+    private volatile long population;
+
+    /**
+     * The bytes the last step allocated.
+     */
+    private volatile long allocated;
+
+    /**
+     * The number of generations per second over the last complete window.
+     */
+    private volatile double generationRate;
+
+    /**
+     * When the current window of the rate started, 0 before the first step.
+     */
+    private long windowStart;
+
+    /**
+     * The generation the current window of the rate started at.
+     */
+    private long windowGeneration;
+
+    /**
+     * The cells evaluated counted by the grid before the last step.
+     */
+    private long lastEvaluated;
+
+    /**
+     * The births counted by the grid before the last step.
+     */
+    private long lastBirths;
+
+    /**
+     * The deaths counted by the grid before the last step.
+     */
+    private long lastDeaths;
+
+    /**
+     * Gets the bytes allocated by the current thread so far, to be passed to {@link #recordStep}.
+     *
+     * @return The number of bytes, or 0 if the JVM cannot tell.
+     */
+    public static long allocatedBytes() {
+        return (THREADS == null) ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Finds the bean counting the bytes allocated by each thread.
+     *
+     * @return The bean, or {@code null} if the JVM cannot count allocations.
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Records a step.
+     *
+     * @param generation The generation reached by the step.
+     * @param advanced   The number of generations the step advanced.
+     * @param nanos      The time the step took.
+     * @param cells      The cells after the step.
+     * @param allocated  The bytes the step allocated, from two calls to {@link #allocatedBytes()}.
+     */
+    public void recordStep(long generation, long advanced, long nanos, BitGrid cells, long allocated) {
+        stepLatency.record(nanos);
+        // the counters of the grid only grow, except when the model replaced the grid
+        long evaluatedNow = cells.getEvaluatedCells();
+        long birthsNow = cells.getBirths();
+        long deathsNow = cells.getDeaths();
+        this.evaluated = Math.max(0, evaluatedNow - lastEvaluated);
+        this.births = Math.max(0, birthsNow - lastBirths);
+        this.deaths = Math.max(0, deathsNow - lastDeaths);
+        lastEvaluated = evaluatedNow;
+        lastBirths = birthsNow;
+        lastDeaths = deathsNow;
+        this.population = cells.population();
+        this.allocated = allocated;
+        this.generation = generation;
+        long now = System.nanoTime();
+        if (windowStart == 0) {
+            windowStart = now - nanos;
+            windowGeneration = generation - advanced;
+        } else if (now - windowStart >= RATE_WINDOW) {
+            generationRate = (generation - windowGeneration) * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowGeneration = generation;
+        }
+
+        GenerationEvent event = new GenerationEvent();
+        if (event.isEnabled()) {
+            event.generation = generation;
+            event.advanced = advanced;
+            event.stepTime = nanos;
+            event.evaluated = evaluated;
+            event.births = births;
+            event.deaths = deaths;
+            event.population = population;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a frame.
+     *
+     * @param generation The generation painted.
+     * @param nanos      The time the frame took.
+     */
+    public void recordRender(long generation, long nanos) {
+        renderLatency.record(nanos);
+        RenderEvent event = new RenderEvent();
+        if (event.isEnabled()) {
+            event.generation = generation;
+            event.renderTime = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Forgets the durations and rate recorded so far, for instance when a new run starts. Must be called on
+     * the thread recording the steps.
+     */
+    public void reset() {
+        stepLatency.reset();
+        renderLatency.reset();
+        generationRate = 0;
+        windowStart = 0;
+    }
+
+    /**
+     * Gets the durations of the steps.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getStepLatency() {
+        return stepLatency;
+    }
+
+    /**
+     * Gets the durations of the frames.
+     *
+     * @return The histogram, in nanoseconds.
+     */
+    public LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    /**
+     * Gets the number of generations run per second, measured over the last half second of steps.
+     *
+     * @return The rate, 0 until half a second of steps was recorded.
+     */
+    public double getGenerationRate() {
+        return generationRate;
+    }
+
+    /**
+     * Gets the generation reached by the last step.
+     *
+     * @return The generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the number of cells the last step evaluated.
+     *
+     * @return The number of cells.
+     */
+    public long getEvaluated() {
+        return evaluated;
+    }
+
+    /**
+     * Gets the number of cells born in the last step.
+     *
+     * @return The number of births.
+     */
+    public long getBirths() {
+        return births;
+    }
+
+    /**
+     * Gets the number of cells that died in the last step.
+     *
+     * @return The number of deaths.
+     */
+    public long getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * Gets the number of living cells after the last step.
+     *
+     * @return The population.
+     */
+    public long getPopulation() {
+        return population;
+    }
+
+    /**
+     * Gets the bytes the last step allocated.
+     *
+     * @return The number of bytes.
+     */
+    public long getAllocated() {
+        return allocated;
+    }
+}
@@ -0,0 +1,26 @@
+package io;
+
+/**
+ * Receives the living cells of a pattern as it is read, so the pattern never has to be held in memory.
+ * Rows grow downwards and columns to the right; coordinates may be negative.
+ */
+public interface CellSink {
+
+    /**
+     * Receives the size of the pattern, if the format declares it before the cells.
+     *
+     * @param width  The number of columns.
+     * @param height The number of rows.
+     */
+    default void size(long width, long height) {
+    }
+
+    /**
+     * Receives a run of living cells on a row.
+     *
+     * @param row    The row of the run.
+     * @param col    The column of the first cell.
+     * @param length The number of cells.
+     */
+    void run(long row, long col, long length);
+}
@@ -0,0 +1,77 @@
+package io;
+
+import engine.BitGrid;
+
+/**
+ * Writes the cells of a pattern straight into a packed grid, cutting off whatever falls outside it.
+ */
+public class GridSink implements CellSink {
+
+    /**
+     * The grid the cells are written into.
+     */
+    private final BitGrid cells;
+
+    /**
+     * The row of the grid row 0 of the pattern is written to.
+     */
+    private long rowOffset;
+
+    /**
+     * The column of the grid column 0 of the pattern is written to.
+     */
+    private long colOffset;
+
+    /**
+     * A flag indicating whether the pattern is centred once its size is known.
+     */
+    private final boolean centre;
+
+    /**
+     * Constructs a sink writing cells at an offset.
+     *
+     * @param cells     The grid the cells are written into.
+     * @param rowOffset The row of the grid row 0 of the pattern is written to.
+     * @param colOffset The column of the grid column 0 of the pattern is written to.
+     * @param centre    Whether to centre the pattern instead if the format declares its size.
+     */
+    public GridSink(BitGrid cells, long rowOffset, long colOffset, boolean centre) {
+        this.cells = cells;
+        this.rowOffset = rowOffset;
+        this.colOffset = colOffset;
+        this.centre = centre;
+    }
+
+    /**
+     * Constructs a sink placing a pattern the usual way for its format: patterns of a known size in the
+     * centre, Life 1.06 coordinates around the centre and plaintext patterns at the top left.
+     *
+     * @param cells  The grid the cells are written into.
+     * @param format The format of the pattern.
+     * @return The sink.
+     */
+    public static GridSink placing(BitGrid cells, PatternFormat format) {
+        if (format == PatternFormat.LIFE_106) {
+            return new GridSink(cells, cells.getRows() / 2, cells.getCols() / 2, false);
+        }
+        return new GridSink(cells, 0, 0, true);
+    }
+
+    @Override
+    public void size(long width, long height) {
+        if (centre) {
+            rowOffset = (cells.getRows() - height) / 2;
+            colOffset = (cells.getCols() - width) / 2;
+        }
+    }
+
+    @Override
+    public void run(long row, long col, long length) {
+        long r = row + rowOffset;
+        long from = Math.max(0, col + colOffset);
+        long to = Math.min(cells.getCols(), col + colOffset + length);
+        if (r >= 0 && r < cells.getRows() && from < to) {
+            cells.setRun((int) r, (int) from, (int) (to - from));
+        }
+    }
+}
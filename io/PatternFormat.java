@@ -0,0 +1,94 @@
+package io;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The pattern file formats that can be imported and exported.
+ */
+public enum PatternFormat {
+
+    /**
+     * Run-length encoded cells with an {@code x = , y = , rule = } header.
+     */
+    RLE("Run Length Encoded", "rle"),
+
+    /**
+     * One {@code x y} coordinate pair per living cell, relative to the centre, after a {@code #Life 1.06} line.
+     */
+    LIFE_106("Life 1.06", "lif", "life"),
+
+    /**
+     * One line per row, {@code O} for living and {@code .} for dead cells.
+     */
+    PLAINTEXT("Plaintext", "cells", "txt");
+
+    /**
+     * Name of the format shown to the user.
+     */
+    private final String description;
+
+    /**
+     * File extensions of the format, the first one is used for new files.
+     */
+    private final String[] extensions;
+
+    /**
+     * Constructor that sets the name and extensions of the format.
+     *
+     * @param description Name of the format shown to the user.
+     * @param extensions  File extensions of the format, without the dot.
+     */
+    PatternFormat(String description, String... extensions) {
+        this.description = description;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Gets the name of the format shown to the user.
+     *
+     * @return The name.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the file extensions of the format.
+     *
+     * @return The extensions, without the dot.
+     */
+    public String[] getExtensions() {
+        return extensions.clone();
+    }
+
+    /**
+     * Gets the extensions of every format.
+     *
+     * @return The extensions, without the dot.
+     */
+    public static String[] allExtensions() {
+        return Arrays.stream(values()).flatMap(format -> Arrays.stream(format.extensions)).toArray(String[]::new);
+    }
+
+    /**
+     * Finds the format of a file from its extension.
+     *
+     * @param path The file.
+     * @return The format.
+     * @throws IllegalArgumentException If the extension belongs to no format.
+     */
+    public static PatternFormat forPath(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        for (PatternFormat format : values()) {
+            for (String candidate : format.extensions) {
+                if (candidate.equals(extension)) {
+                    return format;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown pattern format: " + path.getFileName());
+    }
+}
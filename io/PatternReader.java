@@ -0,0 +1,305 @@
+package io;
+
+import engine.Rule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Streaming parser for pattern files. The input is scanned a block of bytes at a time and living cells are
+ * handed to a {@link CellSink} as runs, so even huge patterns are read without building strings or
+ * objects per cell.
+ */
+public class PatternReader {
+
+    /**
+     * Size of the blocks read from the input.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * The input.
+     */
+    private final InputStream in;
+
+    /**
+     * Receives the number of bytes read so far after every block, or {@code null}.
+     */
+    private final LongConsumer progress;
+
+    /**
+     * The current block.
+     */
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    /**
+     * Position of the next byte in the block.
+     */
+    private int position;
+
+    /**
+     * The number of valid bytes in the block.
+     */
+    private int limit;
+
+    /**
+     * The number of bytes read so far.
+     */
+    private long bytesRead;
+
+    /**
+     * The rule declared by the pattern, or {@code null}.
+     */
+    private Rule rule;
+
+    /**
+     * Constructs a reader.
+     *
+     * @param in       The input; it is not closed by the reader.
+     * @param progress Receives the number of bytes read so far after every block, or {@code null}.
+     */
+    public PatternReader(InputStream in, LongConsumer progress) {
+        this.in = in;
+        this.progress = progress;
+    }
+
+    /**
+     * Reads a pattern.
+     *
+     * @param format The format of the input.
+     * @param sink   Receives the living cells.
+     * @throws IOException If the input cannot be read or is not a valid pattern.
+     */
+    public void read(PatternFormat format, CellSink sink) throws IOException {
+        switch (format) {
+            case RLE -> readRle(sink);
+            case LIFE_106 -> readLife106(sink);
+            case PLAINTEXT -> readPlaintext(sink);
+        }
+    }
+
+    /**
+     * Gets the rule declared by the pattern.
+     *
+     * @return The rule, or {@code null} if the pattern declared none or one that is not supported.
+     */
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * Reads the next byte.
+     *
+     * @return The byte, or -1 at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    private int next() throws IOException {
+        if (position == limit) {
+            limit = in.read(block);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+            bytesRead += limit;
+            if (progress != null) {
+                progress.accept(bytesRead);
+            }
+        }
+        return block[position++] & 0xFF;
+    }
+
+    /**
+     * Skips the rest of the current line.
+     *
+     * @return The byte ending the line, '\n' or -1.
+     * @throws IOException If the input cannot be read.
+     */
+    private int skipLine() throws IOException {
+        int c = next();
+        while (c != '\n' && c != -1) {
+            c = next();
+        }
+        return c;
+    }
+
+    /**
+     * Reads a pattern in the RLE format: comment lines starting with {@code #}, a header line and the
+     * run-length encoded rows, such as {@code bo$2bo$3o!}.
+     *
+     * @param sink Receives the living cells.
+     * @throws IOException If the input cannot be read or is not a valid pattern.
+     */
+    private void readRle(CellSink sink) throws IOException {
+        int c = next();
+        // comments and header, the only line read as a string
+        while (c == '#' || c == '\r' || c == '\n' || c == ' ' || c == '\t') {
+            c = (c == '#') ? skipLine() : next();
+        }
+        if (c == 'x') {
+            StringBuilder header = new StringBuilder();
+            while (c != '\n' && c != -1) {
+                header.append((char) c);
+                c = next();
+            }
+            parseRleHeader(header.toString(), sink);
+            c = next();
+        }
+
+        long row = 0;
+        long col = 0;
+        long count = 0;
+        for (; c != -1 && c != '!'; c = next()) {
+            if (c >= '0' && c <= '9') {
+                count = count * 10 + (c - '0');
+                continue;
+            } else if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                continue;
+            }
+            long run = (count == 0) ? 1 : count;
+            if (c == 'b' || c == '.') {
+                col += run;
+            } else if (c == '$') {
+                row += run;
+                col = 0;
+            } else if (c == 'o' || (c >= 'A' && c <= 'Z') || (c >= 'p' && c <= 'y')) {
+                if (c >= 'p') {
+                    // states above 24 take two letters, such as pA, which make a single run
+                    c = next();
+                    if (c < 'A' || c > 'X') {
+                        throw new IOException("Incomplete multi-state cell in RLE pattern");
+                    }
+                }
+                // every state of multi-state rules counts as alive
+                sink.run(row, col, run);
+                col += run;
+            } else if (c == '#') {
+                skipLine();
+            } else {
+                throw new IOException("Unexpected character '" + (char) c + "' in RLE pattern");
+            }
+            count = 0;
+        }
+    }
+
+    /**
+     * Reads the size and rule from the header line of an RLE pattern, such as {@code x = 3, y = 3, rule = B3/S23}.
+     *
+     * @param header The header line.
+     * @param sink   Receives the size.
+     * @throws IOException If the size is not a number.
+     */
+    private void parseRleHeader(String header, CellSink sink) throws IOException {
+        long width = -1;
+        long height = -1;
+        for (String entry : header.split(",")) {
+            int equals = entry.indexOf('=');
+            if (equals < 0) {
+                continue;
+            }
+            String key = entry.substring(0, equals).trim();
+            String value = entry.substring(equals + 1).trim();
+            try {
+                switch (key) {
+                    case "x" -> width = Long.parseLong(value);
+                    case "y" -> height = Long.parseLong(value);
+                    case "rule" -> rule = Rule.parse(value);
+                    default -> {
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid RLE header: " + header);
+            } catch (IllegalArgumentException e) {
+                // keep the current rule for rules that cannot be expressed
+                rule = null;
+            }
+        }
+        if (width >= 0 && height >= 0) {
+            sink.size(width, height);
+        }
+    }
+
+    /**
+     * Reads a pattern in the Life 1.06 format: lines starting with {@code #} and one {@code x y} pair per
+     * living cell.
+     *
+     * @param sink Receives the living cells.
+     * @throws IOException If the input cannot be read or is not a valid pattern.
+     */
+    private void readLife106(CellSink sink) throws IOException {
+        long[] pair = new long[2];
+        int c = next();
+        while (c != -1) {
+            if (c == '#') {
+                c = skipLine();
+                continue;
+            }
+            int values = 0;
+            while (c != '\n' && c != -1) {
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    if (values == 2) {
+                        throw new IOException("Too many coordinates on a Life 1.06 line");
+                    }
+                    boolean negative = c == '-';
+                    long value = 0;
+                    c = negative ? next() : c;
+                    while (c >= '0' && c <= '9') {
+                        value = value * 10 + (c - '0');
+                        c = next();
+                    }
+                    pair[values++] = negative ? -value : value;
+                } else if (c == ' ' || c == '\t' || c == '\r') {
+                    c = next();
+                } else {
+                    throw new IOException("Unexpected character '" + (char) c + "' in Life 1.06 pattern");
+                }
+            }
+            if (values == 2) {
+                sink.run(pair[1], pair[0], 1);
+            } else if (values != 0) {
+                throw new IOException("Missing coordinate on a Life 1.06 line");
+            }
+            c = next();
+        }
+    }
+
+    /**
+     * Reads a pattern in the plaintext format: lines starting with {@code !} and one line per row, where
+     * {@code O} or {@code *} is a living cell.
+     *
+     * @param sink Receives the living cells.
+     * @throws IOException If the input cannot be read.
+     */
+    private void readPlaintext(CellSink sink) throws IOException {
+        long row = 0;
+        int c = next();
+        while (c != -1) {
+            if (c == '!') {
+                c = skipLine();
+                c = next();
+                continue;
+            }
+            long col = 0;
+            long runStart = -1;
+            for (; c != '\n' && c != -1; c = next()) {
+                if (c == '\r') {
+                    continue;
+                }
+                boolean alive = c == 'O' || c == '*';
+                if (alive && runStart < 0) {
+                    runStart = col;
+                } else if (!alive && runStart >= 0) {
+                    sink.run(row, runStart, col - runStart);
+                    runStart = -1;
+                }
+                col++;
+            }
+            if (runStart >= 0) {
+                sink.run(row, runStart, col - runStart);
+            }
+            row++;
+            c = next();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package io;
+
+import engine.BitGrid;
+import engine.Rule;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer for pattern files. Rows are scanned a word of 64 cells at a time, so runs of dead cells
+ * cost nothing and the pattern is never built up in memory.
+ */
+public class PatternWriter {
+
+    /**
+     * Longest line of an RLE pattern, as recommended by the format.
+     */
+    private static final int RLE_LINE_LENGTH = 70;
+
+    /**
+     * The output.
+     */
+    private final Writer out;
+
+    /**
+     * The format written.
+     */
+    private final PatternFormat format;
+
+    /**
+     * A flag indicating whether the line identifying the format was written.
+     */
+    private boolean started;
+
+    /**
+     * The length of the current line of an RLE pattern.
+     */
+    private int lineLength;
+
+    /**
+     * Constructs a writer.
+     *
+     * @param out    The output; it is not closed by the writer.
+     * @param format The format to write.
+     */
+    public PatternWriter(Writer out, PatternFormat format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Writes a comment line; comments must come before the cells.
+     *
+     * @param text The comment, on a single line.
+     * @throws IOException If the output cannot be written.
+     */
+    public void comment(String text) throws IOException {
+        start();
+        switch (format) {
+            case RLE -> out.write("#C " + text);
+            case LIFE_106 -> out.write("#D " + text);
+            case PLAINTEXT -> out.write("!" + text);
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Writes the living cells of a grid.
+     *
+     * @param cells The cells.
+     * @param rule  The rule the cells evolve by, recorded in formats that support it.
+     * @throws IOException If the output cannot be written.
+     */
+    public void write(BitGrid cells, Rule rule) throws IOException {
+        start();
+        switch (format) {
+            case RLE -> writeRle(cells, rule);
+            case LIFE_106 -> writeLife106(cells);
+            case PLAINTEXT -> writePlaintext(cells);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the line identifying the format, once.
+     *
+     * @throws IOException If the output cannot be written.
+     */
+    private void start() throws IOException {
+        if (!started && format == PatternFormat.LIFE_106) {
+            out.write("#Life 1.06\n");
+        }
+        started = true;
+    }
+
+    /**
+     * Finds the next living cell of a row.
+     *
+     * @param cells The cells.
+     * @param row   The row.
+     * @param col   The column to start at.
+     * @return The column of the living cell, or the number of columns if there is none.
+     */
+    private static int nextAlive(BitGrid cells, int row, int col) {
+        if (col >= cells.getCols()) {
+            return cells.getCols();
+        }
+        long[] words = cells.getWords();
+        int base = row * cells.getWordsPerRow();
+        int w = col >>> 6;
+        long word = words[base + w] & (-1L << col);
+        while (word == 0) {
+            if (++w == cells.getWordsPerRow()) {
+                return cells.getCols();
+            }
+            word = words[base + w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Finds the next dead cell of a row.
+     *
+     * @param cells The cells.
+     * @param row   The row.
+     * @param col   The column to start at.
+     * @return The column of the dead cell, or the number of columns if there is none.
+     */
+    private static int nextDead(BitGrid cells, int row, int col) {
+        if (col >= cells.getCols()) {
+            return cells.getCols();
+        }
+        long[] words = cells.getWords();
+        int base = row * cells.getWordsPerRow();
+        int w = col >>> 6;
+        long word = ~words[base + w] & (-1L << col);
+        while (word == 0) {
+            if (++w == cells.getWordsPerRow()) {
+                return cells.getCols();
+            }
+            word = ~words[base + w];
+        }
+        // the bits beyond the last column are always clear, so they read as dead
+        return Math.min(cells.getCols(), (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Writes the cells in the RLE format, dropping dead cells at the end of rows and empty rows at the end.
+     *
+     * @param cells The cells.
+     * @param rule  The rule the cells evolve by.
+     * @throws IOException If the output cannot be written.
+     */
+    private void writeRle(BitGrid cells, Rule rule) throws IOException {
+        out.write("x = " + cells.getCols() + ", y = " + cells.getRows() + ", rule = " + rule + "\n");
+        int pendingRows = 0;
+        for (int row = 0; row < cells.getRows(); row++) {
+            int col = nextAlive(cells, row, 0);
+            if (col < cells.getCols() && pendingRows > 0) {
+                writeRun(pendingRows, '$');
+                pendingRows = 0;
+            }
+            int end = 0;
+            while (col < cells.getCols()) {
+                if (col > end) {
+                    writeRun(col - end, 'b');
+                }
+                end = nextDead(cells, row, col);
+                writeRun(end - col, 'o');
+                col = nextAlive(cells, row, end);
+            }
+            pendingRows++;
+        }
+        out.write("!\n");
+    }
+
+    /**
+     * Writes a run of an RLE pattern, starting a new line if it would not fit.
+     *
+     * @param length The length of the run.
+     * @param tag    The tag of the run.
+     * @throws IOException If the output cannot be written.
+     */
+    private void writeRun(int length, char tag) throws IOException {
+        String run = (length == 1) ? String.valueOf(tag) : length + String.valueOf(tag);
+        if (lineLength + run.length() > RLE_LINE_LENGTH) {
+            out.write('\n');
+            lineLength = 0;
+        }
+        out.write(run);
+        lineLength += run.length();
+    }
+
+    /**
+     * Writes the cells in the Life 1.06 format, with coordinates relative to the centre of the grid.
+     *
+     * @param cells The cells.
+     * @throws IOException If the output cannot be written.
+     */
+    private void writeLife106(BitGrid cells) throws IOException {
+        int centreRow = cells.getRows() / 2;
+        int centreCol = cells.getCols() / 2;
+        for (int row = 0; row < cells.getRows(); row++) {
+            for (int col = nextAlive(cells, row, 0); col < cells.getCols(); col = nextAlive(cells, row, col + 1)) {
+                out.write((col - centreCol) + " " + (row - centreRow) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the cells in the plaintext format, dropping dead cells at the end of rows.
+     *
+     * @param cells The cells.
+     * @throws IOException If the output cannot be written.
+     */
+    private void writePlaintext(BitGrid cells) throws IOException {
+        char[] line = new char[cells.getCols() + 1];
+        for (int row = 0; row < cells.getRows(); row++) {
+            int length = 0;
+            for (int col = nextAlive(cells, row, 0); col < cells.getCols(); col = nextAlive(cells, row, col + 1)) {
+                while (length < col) {
+                    line[length++] = '.';
+                }
+                line[length++] = 'O';
+            }
+            line[length++] = '\n';
+            out.write(line, 0, length);
+        }
+    }
+}
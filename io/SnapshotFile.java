@@ -0,0 +1,295 @@
+package io;
+
+import engine.BitGrid;
+import engine.Rule;
+import engine.Soup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compact binary snapshot of a universe. A {@value #HEADER_SIZE}-byte header holding the size, rule,
+ * generation and checksum is followed by the packed rows, word for word as a {@link BitGrid} stores them,
+ * in little-endian order. Both directions go through memory-mapped regions of the file and move the words
+ * in bulk, so even multi-gigabyte universes are saved and loaded at the speed of the disk, with no parsing.
+ * <p>
+ * Header layout: the magic {@code GOLSNAP1}, rows and columns as ints, the birth and survive masks of the
+ * rule as ints, the generation and the checksum as longs. The checksum is {@link BitGrid#getHash()}. The
+ * random soup the universe started from may follow, as its seed and its density as a double; a density of 0,
+ * as in snapshots saved without a soup, means none is recorded.
+ */
+public final class SnapshotFile {
+
+    /**
+     * File extension of snapshots.
+     */
+    public static final String EXTENSION = "golsnap";
+
+    /**
+     * Size of the header in bytes; the rows start after it, aligned to a word.
+     */
+    public static final int HEADER_SIZE = 64;
+
+    /**
+     * The first eight bytes of every snapshot, {@code GOLSNAP1} read as a little-endian long.
+     */
+    private static final long MAGIC = 0x3150414E534C4F47L;
+
+    /**
+     * Largest region mapped at once; a mapped buffer cannot be larger than 2 GB.
+     */
+    private static final long MAX_REGION = 1L << 30;
+
+    /**
+     * The path of the snapshot.
+     */
+    private final Path path;
+
+    /**
+     * The number of rows.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns.
+     */
+    private final int cols;
+
+    /**
+     * The rule the universe evolves by.
+     */
+    private final Rule rule;
+
+    /**
+     * The number of the generation.
+     */
+    private final long generation;
+
+    /**
+     * The hash of the cells.
+     */
+    private final long checksum;
+
+    /**
+     * The random soup the universe started from, or {@code null}.
+     */
+    private final Soup soup;
+
+    /**
+     * Constructs a snapshot from its header.
+     *
+     * @param path       The path of the snapshot.
+     * @param rows       The number of rows.
+     * @param cols       The number of columns.
+     * @param rule       The rule the universe evolves by.
+     * @param generation The number of the generation.
+     * @param checksum   The hash of the cells.
+     * @param soup       The random soup the universe started from, or {@code null}.
+     */
+    private SnapshotFile(Path path, int rows, int cols, Rule rule, long generation, long checksum, Soup soup) {
+        this.path = path;
+        this.rows = rows;
+        this.cols = cols;
+        this.rule = rule;
+        this.generation = generation;
+        this.checksum = checksum;
+        this.soup = soup;
+    }
+
+    /**
+     * Checks whether a file is a snapshot, from its extension.
+     *
+     * @param path The file.
+     * @return {@code true} if the file has the snapshot extension.
+     */
+    public static boolean isSnapshot(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith("." + EXTENSION);
+    }
+
+    /**
+     * Saves a universe.
+     *
+     * @param path       The file to write.
+     * @param cells      The cells.
+     * @param rule       The rule the universe evolves by.
+     * @param generation The number of the generation.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, BitGrid cells, Rule rule, long generation) throws IOException {
+        write(path, cells, rule, generation, null);
+    }
+
+    /**
+     * Saves a universe along with the random soup it started from.
+     *
+     * @param path       The file to write.
+     * @param cells      The cells.
+     * @param rule       The rule the universe evolves by.
+     * @param generation The number of the generation.
+     * @param soup       The random soup the universe started from, or {@code null}.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, BitGrid cells, Rule rule, long generation, Soup soup)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC)
+                    .putInt(cells.getRows())
+                    .putInt(cells.getCols())
+                    .putInt(rule.getBirthMask())
+                    .putInt(rule.getSurviveMask())
+                    .putLong(generation)
+                    .putLong(cells.getHash());
+            if (soup != null) {
+                header.putLong(soup.getSeed()).putDouble(soup.getDensity());
+            }
+            header.clear();
+            channel.write(header, 0);
+            int words = cells.getWords().length;
+            int regionWords = regionWords(cells.getWordsPerRow());
+            for (int from = 0; from < words; from += regionWords) {
+                int count = Math.min(regionWords, words - from);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + (long) from * Long.BYTES, (long) count * Long.BYTES);
+                cells.writeWords(from, region.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer());
+                region.force();
+            }
+        }
+    }
+
+    /**
+     * Opens a snapshot and reads its header.
+     *
+     * @param path The file to read.
+     * @return The snapshot, whose cells are read by {@link #readInto(BitGrid)}.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static SnapshotFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getLong() != MAGIC) {
+                throw new IOException("Not a snapshot: " + path.getFileName());
+            }
+            int rows = header.getInt();
+            int cols = header.getInt();
+            Rule rule = new Rule(header.getInt(), header.getInt());
+            long generation = header.getLong();
+            long checksum = header.getLong();
+            long seed = header.getLong();
+            double density = header.getDouble();
+            long words = (long) rows * ((cols + 63) / 64);
+            if (rows < 0 || cols < 0 || words > Integer.MAX_VALUE
+                    || channel.size() != HEADER_SIZE + words * Long.BYTES) {
+                throw new IOException("Snapshot is truncated or corrupt: " + path.getFileName());
+            }
+            Soup soup = (density > 0 && density <= 1) ? new Soup(seed, density) : null;
+            return new SnapshotFile(path, rows, cols, rule, generation, checksum, soup);
+        }
+    }
+
+    /**
+     * Loads the cells into a grid of the same size once they match the checksum. The checksum is computed from
+     * the mapped file before any cell is loaded, so the grid is left as it was if the file turns out to be
+     * unreadable or corrupt.
+     *
+     * @param cells The grid, replaced entirely.
+     * @throws IOException              If the file cannot be read or its cells do not match the checksum.
+     * @throws IllegalArgumentException If the grid is not the size of the snapshot.
+     */
+    public void readInto(BitGrid cells) throws IOException {
+        if (cells.getRows() != rows || cells.getCols() != cols) {
+            throw new IllegalArgumentException("Snapshot is " + rows + "x" + cols + ", grid is "
+                    + cells.getRows() + "x" + cells.getCols());
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int words = cells.getWords().length;
+            int regionWords = regionWords(cells.getWordsPerRow());
+            List<LongBuffer> regions = new ArrayList<>();
+            long hash = 0;
+            for (int from = 0; from < words; from += regionWords) {
+                int count = Math.min(regionWords, words - from);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + (long) from * Long.BYTES, (long) count * Long.BYTES);
+                LongBuffer longs = region.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                hash ^= BitGrid.hashWords(cols, from, longs);
+                regions.add(longs);
+            }
+            if (hash != checksum) {
+                throw new IOException("Snapshot checksum does not match: " + path.getFileName());
+            }
+            for (int i = 0; i < regions.size(); i++) {
+                cells.readWords(i * regionWords, regions.get(i));
+            }
+        }
+    }
+
+    /**
+     * Computes how many words are mapped at once, a whole number of rows where possible.
+     *
+     * @param wordsPerRow The number of words per row.
+     * @return The number of words.
+     */
+    private static int regionWords(int wordsPerRow) {
+        long rowsPerRegion = Math.max(1, MAX_REGION / Long.BYTES / Math.max(1, wordsPerRow));
+        return (int) Math.min(Integer.MAX_VALUE, rowsPerRegion * Math.max(1, wordsPerRow));
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns.
+     *
+     * @return The number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Gets the rule the universe evolves by.
+     *
+     * @return The rule.
+     */
+    public Rule getRule() {
+        return rule;
+    }
+
+    /**
+     * Gets the number of the generation.
+     *
+     * @return The generation.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the random soup the universe started from.
+     *
+     * @return The soup, or {@code null} if none is recorded.
+     */
+    public Soup getSoup() {
+        return soup;
+    }
+}
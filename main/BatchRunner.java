@@ -0,0 +1,562 @@
+package main;
+
+import engine.BitGrid;
+import engine.Boundary;
+import engine.CycleDetector;
+import engine.HashLife;
+import engine.LatencyHistogram;
+import engine.LifeEngine;
+import engine.Rule;
+import engine.Soup;
+import engine.SparseUniverse;
+import engine.Telemetry;
+import io.CellSink;
+import io.GridSink;
+import io.PatternFormat;
+import io.PatternReader;
+import io.PatternWriter;
+import io.SnapshotFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the simulation from the command line without a window, for batch jobs on headless hosts. It only
+ * uses the engine, so no AWT class is ever loaded.
+ * <p>
+ * Usage: {@code java main.Main --headless [options]}, see {@link #USAGE}. The statistics of the run are
+ * printed first as comments, followed by the final generation as a pattern.
+ */
+public class BatchRunner {
+
+    /**
+     * Help printed for invalid arguments.
+     */
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java main.Main --headless [options]",
+            "  --rows N          rows of the grid (default 256, or the height of the pattern)",
+            "  --cols N          columns of the grid (default 256, or the width of the pattern)",
+            "  --rule R          18-digit binary rule as in the Model field, or B3/S23 notation (default: the rule",
+            "                    of the pattern, or Conway)",
+            "  --generations N   number of generations to run (default 1000)",
+            "  --pattern FILE    RLE (.rle), Life 1.06 (.lif) or plaintext (.cells) pattern to start from",
+            "  --snapshot FILE   binary snapshot to start from, with its size, rule and generation",
+            "  --seed S          seed of the random soup used when no pattern is given, as shown by the Seed",
+            "                    field of the game (default 0)",
+            "  --density D       fraction of living cells in the random soup (default 0.25)",
+            "  --engine E        packed, wide, sparse or hashlife (default packed)",
+            "  --boundary B      dead, torus or mirror, what lies beyond the edges of the grid (default dead);",
+            "                    sparse and hashlife step on the grid unless the edges are dead",
+            "  --threads N       threads stepping the packed grid (default 1)",
+            "  --max-period P    longest cycle that stops the run early, 0 to always run (default 64)",
+            "  --output FILE     write the statistics and final state to a file instead of stdout, in the",
+            "                    pattern format of its extension",
+            "  --format F        rle, life or cells, the pattern format written to stdout (default cells)",
+            "  --save-snapshot FILE  also save the final state as a binary snapshot",
+            "  --no-state        only write the statistics");
+
+    /**
+     * Default width and height of the grid without a pattern.
+     */
+    private static final int DEFAULT_SIZE = 256;
+
+    /**
+     * Longest cycle that may be detected, bounding the memory of the detector.
+     */
+    private static final int MAX_PERIOD = 1 << 20;
+
+    /**
+     * The number of rows in the grid, -1 to fit the pattern.
+     */
+    private int rows = -1;
+
+    /**
+     * The number of columns in the grid, -1 to fit the pattern.
+     */
+    private int cols = -1;
+
+    /**
+     * The rule to apply, or {@code null} for the rule of the pattern.
+     */
+    private Rule rule;
+
+    /**
+     * The number of generations to run.
+     */
+    private long generations = 1000;
+
+    /**
+     * The pattern to start from, or {@code null} for a random soup.
+     */
+    private Path pattern;
+
+    /**
+     * The binary snapshot to start from, or {@code null}.
+     */
+    private Path snapshot;
+
+    /**
+     * The binary snapshot to save the final state to, or {@code null}.
+     */
+    private Path saveSnapshot;
+
+    /**
+     * The generation of the starting state.
+     */
+    private long firstGeneration;
+
+    /**
+     * The seed of the random soup.
+     */
+    private long seed;
+
+    /**
+     * The fraction of living cells in the random soup.
+     */
+    private double density = Soup.DEFAULT_DENSITY;
+
+    /**
+     * The random soup the run started from, or {@code null}.
+     */
+    private Soup soup;
+
+    /**
+     * The name of the engine stepping the cells.
+     */
+    private String engine = "packed";
+
+    /**
+     * What lies beyond the edges of the grid.
+     */
+    private Boundary boundary = Boundary.DEAD;
+
+    /**
+     * The number of threads stepping the packed grid.
+     */
+    private int threads = 1;
+
+    /**
+     * The longest cycle detected, 0 to always run until the last generation.
+     */
+    private int maxPeriod = CycleDetector.DEFAULT_MAX_PERIOD;
+
+    /**
+     * The file to write to, or {@code null} for stdout.
+     */
+    private Path output;
+
+    /**
+     * The pattern format written.
+     */
+    private PatternFormat format = PatternFormat.PLAINTEXT;
+
+    /**
+     * A flag indicating whether the final state is written after the statistics.
+     */
+    private boolean writeState = true;
+
+    /**
+     * Runs a batch from the command line and exits with 0 on success, 1 if a file could not be read or
+     * written, and 2 for invalid arguments.
+     *
+     * @param args The options, see {@link #USAGE}; {@code --headless} itself is ignored.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs a batch.
+     *
+     * @param args The options, see {@link #USAGE}; {@code --headless} itself is ignored.
+     * @param out  The stream the results are written to unless an output file is given.
+     * @param err  The stream errors are written to.
+     * @return The exit status.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            runner.execute(out);
+            return 0;
+        } catch (IOException e) {
+            err.println("I/O error: " + e.getMessage());
+            return 1;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Reads the options.
+     *
+     * @param args The options.
+     * @throws IllegalArgumentException If an option is unknown or its value is invalid.
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            switch (option) {
+                case "--headless" -> {
+                }
+                case "--no-state" -> writeState = false;
+                case "--rows" -> rows = parsePositive(option, value(args, ++i, option));
+                case "--cols" -> cols = parsePositive(option, value(args, ++i, option));
+                case "--rule" -> rule = Rule.parse(value(args, ++i, option));
+                case "--generations" -> generations = parseLong(option, value(args, ++i, option));
+                case "--pattern" -> {
+                    pattern = Path.of(value(args, ++i, option));
+                    PatternFormat.forPath(pattern);
+                }
+                case "--snapshot" -> snapshot = Path.of(value(args, ++i, option));
+                case "--save-snapshot" -> saveSnapshot = Path.of(value(args, ++i, option));
+                case "--seed" -> seed = parseLong(option, value(args, ++i, option));
+                case "--density" -> density = parseDensity(option, value(args, ++i, option));
+                case "--boundary" -> boundary = Boundary.parse(value(args, ++i, option));
+                case "--engine" -> {
+                    engine = value(args, ++i, option);
+                    if (!engine.equals("packed") && !engine.equals("wide") && !engine.equals("sparse")
+                            && !engine.equals("hashlife")) {
+                        throw new IllegalArgumentException("Unknown engine: " + engine);
+                    }
+                }
+                case "--threads" -> threads = parsePositive(option, value(args, ++i, option));
+                case "--max-period" -> {
+                    long period = parseLong(option, value(args, ++i, option));
+                    if (period > MAX_PERIOD) {
+                        throw new IllegalArgumentException(option + " must be at most " + MAX_PERIOD + ": " + period);
+                    }
+                    maxPeriod = (int) period;
+                }
+                case "--output" -> {
+                    output = Path.of(value(args, ++i, option));
+                    format = PatternFormat.forPath(output);
+                }
+                case "--format" -> format = PatternFormat.forPath(Path.of("." + value(args, ++i, option)));
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+    }
+
+    /**
+     * Gets the value following an option.
+     *
+     * @param args   The options.
+     * @param i      The index of the value.
+     * @param option The option, for the error message.
+     * @return The value.
+     */
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * Parses a number that may not be negative.
+     *
+     * @param option The option, for the error message.
+     * @param text   The value.
+     * @return The number.
+     */
+    private static long parseLong(String option, String text) {
+        try {
+            long value = Long.parseLong(text);
+            if (value < 0) {
+                throw new IllegalArgumentException(option + " must not be negative: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + text);
+        }
+    }
+
+    /**
+     * Parses a fraction of living cells.
+     *
+     * @param option The option, for the error message.
+     * @param text   The value.
+     * @return The fraction, between 0 and 1.
+     */
+    private static double parseDensity(String option, String text) {
+        try {
+            double value = Double.parseDouble(text);
+            if (!(value >= 0 && value <= 1)) {
+                throw new IllegalArgumentException(option + " must be between 0 and 1: " + text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + text);
+        }
+    }
+
+    /**
+     * Parses a number that must be positive.
+     *
+     * @param option The option, for the error message.
+     * @param text   The value.
+     * @return The number.
+     */
+    private static int parsePositive(String option, String text) {
+        long value = parseLong(option, text);
+        if (value == 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(option + " must be between 1 and " + Integer.MAX_VALUE + ": " + text);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Sets up the grid, runs the generations and writes the results.
+     *
+     * @param out The stream the results are written to unless an output file is given.
+     * @throws IOException If the pattern cannot be read or the results cannot be written.
+     */
+    private void execute(PrintStream out) throws IOException {
+        BitGrid cells;
+        if (snapshot != null) {
+            cells = loadSnapshot();
+        } else {
+            cells = (pattern != null) ? loadPattern() : randomSoup();
+        }
+        if (rule == null) {
+            rule = Rule.CONWAY;
+        }
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        cells.setPool(pool);
+        cells.setIncremental(true);
+        cells.setBoundary(boundary);
+
+        LifeEngine stepper = switch (engine) {
+            case "sparse" -> new SparseUniverse();
+            case "hashlife" -> new HashLife();
+            case "wide" -> LifeEngine.WIDE;
+            default -> LifeEngine.PACKED;
+        };
+        // the grid only shows a window of the unbounded universes, which may settle while the rest does not;
+        // they step on the grid itself when its edges are not dead
+        boolean packed = stepper == LifeEngine.PACKED || stepper == LifeEngine.WIDE || boundary != Boundary.DEAD;
+        CycleDetector detector = (maxPeriod > 0 && packed) ? new CycleDetector(maxPeriod) : null;
+        if (detector != null) {
+            detector.record(0, cells.getHash());
+        }
+
+        Telemetry telemetry = new Telemetry();
+        long start = System.nanoTime();
+        long generation = 0;
+        while (generation < generations) {
+            if (stepper instanceof HashLife hashLife) {
+                hashLife.setStepExponent(63 - Long.numberOfLeadingZeros(generations - generation));
+            }
+            long allocated = Telemetry.allocatedBytes();
+            long stepStart = System.nanoTime();
+            long step = stepper.advance(cells, rule);
+            long stepNanos = System.nanoTime() - stepStart;
+            generation += step;
+            telemetry.recordStep(generation, step, stepNanos, cells, Telemetry.allocatedBytes() - allocated);
+            if (detector != null && detector.record(generation, cells.getHash())) {
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (saveSnapshot != null) {
+            SnapshotFile.write(saveSnapshot, cells, rule, firstGeneration + generation, soup);
+        }
+
+        if (output == null) {
+            PrintWriter writer = new PrintWriter(out);
+            writeResults(cells, generation, elapsed, detector, telemetry, writer);
+            writer.flush();
+        } else {
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                writeResults(cells, generation, elapsed, detector, telemetry, writer);
+            }
+        }
+    }
+
+    /**
+     * Writes the statistics of a run as comment lines, so the output stays a valid plaintext pattern,
+     * followed by the final state unless disabled.
+     *
+     * @param cells      The final state.
+     * @param generation The number of generations run.
+     * @param elapsed    The time the generations took in nanoseconds.
+     * @param detector   The detector that may have stopped the run, or {@code null}.
+     * @param telemetry  The figures recorded for every step.
+     * @param writer     The writer.
+     * @throws IOException If the results cannot be written.
+     */
+    private void writeResults(BitGrid cells, long generation, long elapsed, CycleDetector detector,
+                              Telemetry telemetry, Writer writer) throws IOException {
+        double seconds = Math.max(elapsed, 1) / 1e9;
+        PatternWriter patternWriter = new PatternWriter(writer, format);
+        patternWriter.comment(String.format("Size: %dx%d", cells.getRows(), cells.getCols()));
+        patternWriter.comment(String.format("Rule: %s", rule));
+        patternWriter.comment(String.format("Engine: %s", engine));
+        patternWriter.comment(String.format("Boundary: %s", boundary.name().toLowerCase(Locale.ROOT)));
+        if (soup != null) {
+            patternWriter.comment(String.format("Soup: %s", soup));
+        }
+        patternWriter.comment(String.format("Generations: %d", generation));
+        patternWriter.comment(String.format("Seconds: %.3f", seconds));
+        patternWriter.comment(String.format("Generations/sec: %.1f", generation / seconds));
+        patternWriter.comment(String.format("Cells/sec: %.3e", generation / seconds * cells.getRows() * cells.getCols()));
+        LatencyHistogram latency = telemetry.getStepLatency();
+        patternWriter.comment(String.format("Step latency: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                latency.getMean() / 1e6, latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6,
+                latency.getMax() / 1e6));
+        patternWriter.comment(String.format("Population: %d", cells.population()));
+        if (detector != null && detector.getPeriod() > 0) {
+            patternWriter.comment(String.format("Stabilized: generation %d, period %d",
+                    detector.getStart(), detector.getPeriod()));
+        } else {
+            patternWriter.comment("Stabilized: no");
+        }
+        if (writeState) {
+            patternWriter.write(cells, rule);
+        }
+    }
+
+    /**
+     * Fills a grid with the random soup of the seed and density, like the Random button.
+     *
+     * @return The grid.
+     */
+    private BitGrid randomSoup() {
+        BitGrid cells = new BitGrid((rows > 0) ? rows : DEFAULT_SIZE, (cols > 0) ? cols : DEFAULT_SIZE);
+        soup = new Soup(seed, density);
+        soup.fill(cells);
+        return cells;
+    }
+
+    /**
+     * Loads the binary snapshot into a grid of its size, along with its rule unless one was given.
+     *
+     * @return A grid holding the snapshot.
+     * @throws IOException If the snapshot cannot be read or is corrupt.
+     */
+    private BitGrid loadSnapshot() throws IOException {
+        SnapshotFile file = SnapshotFile.open(snapshot);
+        BitGrid cells = new BitGrid(file.getRows(), file.getCols());
+        file.readInto(cells);
+        if (rule == null) {
+            rule = file.getRule();
+        }
+        firstGeneration = file.getGeneration();
+        soup = file.getSoup();
+        return cells;
+    }
+
+    /**
+     * Reads the pattern. Without a size given, the pattern is read twice: once to measure it and once to
+     * fill a grid that fits it exactly.
+     *
+     * @return A grid holding the pattern.
+     * @throws IOException If the pattern cannot be read.
+     */
+    private BitGrid loadPattern() throws IOException {
+        PatternFormat patternFormat = PatternFormat.forPath(pattern);
+        BitGrid cells;
+        GridSink sink;
+        if (rows > 0 && cols > 0) {
+            cells = new BitGrid(rows, cols);
+            sink = GridSink.placing(cells, patternFormat);
+        } else {
+            Bounds bounds = new Bounds();
+            readPattern(patternFormat, bounds);
+            cells = new BitGrid((rows > 0) ? rows : bounds.height(), (cols > 0) ? cols : bounds.width());
+            sink = new GridSink(cells, -bounds.top, -bounds.left, false);
+        }
+        Rule declared = readPattern(patternFormat, sink);
+        if (rule == null) {
+            rule = declared;
+        }
+        return cells;
+    }
+
+    /**
+     * Streams the pattern into a sink.
+     *
+     * @param patternFormat The format of the pattern.
+     * @param sink          Receives the living cells.
+     * @return The rule declared by the pattern, or {@code null}.
+     * @throws IOException If the pattern cannot be read.
+     */
+    private Rule readPattern(PatternFormat patternFormat, CellSink sink) throws IOException {
+        try (InputStream in = Files.newInputStream(pattern)) {
+            PatternReader reader = new PatternReader(in, null);
+            reader.read(patternFormat, sink);
+            return reader.getRule();
+        }
+    }
+
+    /**
+     * Measures the bounding box of the living cells of a pattern.
+     */
+    private static final class Bounds implements CellSink {
+
+        /**
+         * The first row holding a living cell.
+         */
+        long top = Long.MAX_VALUE;
+
+        /**
+         * The first column holding a living cell.
+         */
+        long left = Long.MAX_VALUE;
+
+        /**
+         * The last row holding a living cell.
+         */
+        long bottom = Long.MIN_VALUE;
+
+        /**
+         * The last column holding a living cell.
+         */
+        long right = Long.MIN_VALUE;
+
+        @Override
+        public void run(long row, long col, long length) {
+            top = Math.min(top, row);
+            bottom = Math.max(bottom, row);
+            left = Math.min(left, col);
+            right = Math.max(right, col + length - 1);
+        }
+
+        /**
+         * Gets the number of rows of the bounding box.
+         *
+         * @return The height, at least 1.
+         */
+        int height() {
+            return (top > bottom) ? 1 : (int) Math.min(Integer.MAX_VALUE, bottom - top + 1);
+        }
+
+        /**
+         * Gets the number of columns of the bounding box.
+         *
+         * @return The width, at least 1.
+         */
+        int width() {
+            return (left > right) ? 1 : (int) Math.min(Integer.MAX_VALUE, right - left + 1);
+        }
+    }
+}
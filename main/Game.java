@@ -1,33 +1,219 @@
 package main;
 
+import engine.BitGrid;
+import engine.Rule;
+import engine.Soup;
 import mvc.GameController;
 import mvc.GameModel;
 import mvc.GameView;
 
+import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
 /**
- * Main class that serves as the entry point of the Java application.
+ * Main class that serves as the entry point of the Java application. The game starts up in phases: the model,
+ * the resources and a warm-up of the engine are built side by side in the background while the splash screen
+ * shows, and the window is built on the Swing thread as soon as the model and resources are ready. Every phase
+ * is timed and recorded as a {@code gameoflife.Startup} Flight Recorder event.
  */
 public class Game {
 
+    /**
+     * Shortest time the splash screen stays up by default, in milliseconds.
+     */
+    public static final int DEFAULT_SPLASH_MILLIS = 1000;
+
+    /**
+     * The size of the grid the engine warms up on.
+     */
+    private static final int WARM_UP_SIZE = 64;
+
+    /**
+     * The generations the engine warms up for.
+     */
+    private static final int WARM_UP_GENERATIONS = 200;
+
+    /**
+     * When the process started, which the time to the first frame is counted from.
+     */
+    private final Instant launched = ProcessHandle.current().info().startInstant().orElseGet(Instant::now);
+
+    /**
+     * The timings of the phases finished so far, one line each.
+     */
+    private final List<String> timings = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * A flag indicating whether the timings are printed once the window is up.
+     */
+    private final boolean printTimings;
+
     /**
      * The main method that will be executed when the program starts
      */
     public Game() {
-        startGame();
+        this(DEFAULT_SPLASH_MILLIS, false);
+    }
+
+    /**
+     * Starts the game.
+     *
+     * @param splashMillis Shortest time the splash screen stays up in milliseconds, or a negative number to
+     *                     start without a splash screen
+     * @param printTimings Whether to print the timings of the phases to the standard error once the window is up
+     */
+    public Game(int splashMillis, boolean printTimings) {
+        this.printTimings = printTimings;
+        startGame(splashMillis);
+    }
+
+    /**
+     * Starts the game, returning once its window is built.
+     *
+     * @param splashMillis Shortest time the splash screen stays up in milliseconds, or a negative number to
+     *                     start without a splash screen
+     */
+    public void startGame(int splashMillis) {
+        // queued first, so the splash screen is up before the Swing thread builds anything else
+        CompletableFuture<SplashScreen> splash = (splashMillis < 0)
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.supplyAsync(() -> timed("splash", () -> showSplash(splashMillis)),
+                        SwingUtilities::invokeLater);
+        // the GameModel will manage the game's data and state
+        CompletableFuture<GameModel> model = CompletableFuture.supplyAsync(() -> timed("model", GameModel::new));
+        CompletableFuture<Void> resources = CompletableFuture.runAsync(() -> timed("resources", () -> {
+            preloadResources();
+            return null;
+        }));
+        // nothing waits for the engine; it only spares the first run from loading and compiling the step
+        CompletableFuture.runAsync(() -> timed("engine", () -> {
+            warmUpEngine();
+            return null;
+        }));
+
+        CompletableFuture<Void> ready = model.thenCombine(resources, (gameModel, loaded) -> gameModel)
+                .thenAcceptBothAsync(splash, (gameModel, screen) -> {
+                    GameView gameView = timed("ui", () -> {
+                        // the GameView will handle the display of the game
+                        GameView view = new GameView();
+                        // the GameController will handle the interaction between the model and view
+                        new GameController(gameModel, view);
+                        return view;
+                    });
+                    // the window opens once this task hands the Swing thread back
+                    watchFirstFrame(gameView.getGameFrame());
+                    if (screen != null) {
+                        screen.closeSplashWindow();
+                    }
+                }, SwingUtilities::invokeLater);
+        try {
+            // keeps the main thread, and with it the process, alive until the window takes over
+            ready.join();
+        } catch (CompletionException e) {
+            splash.thenAcceptAsync(screen -> {
+                if (screen != null) {
+                    screen.dispose();
+                }
+            }, SwingUtilities::invokeLater);
+            System.err.println("Could not start the game:");
+            e.getCause().printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Shows the splash screen.
+     *
+     * @param splashMillis Shortest time the splash screen stays up, in milliseconds
+     * @return The splash screen
+     */
+    private static SplashScreen showSplash(int splashMillis) {
+        SplashScreen screen = new SplashScreen(splashMillis);
+        screen.showSplashWindow();
+        return screen;
+    }
+
+    /**
+     * Runs a phase of the startup, timing it and recording it as a Flight Recorder event.
+     *
+     * @param phase The name of the phase
+     * @param task  The phase
+     * @param <T>   The type of result of the phase
+     * @return The result of the phase
+     */
+    private <T> T timed(String phase, Supplier<T> task) {
+        StartupEvent event = new StartupEvent();
+        event.phase = phase;
+        event.begin();
+        long start = System.nanoTime();
+        T result = task.get();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        event.commit();
+        timings.add(String.format("%-10s %6d ms on %s, done %d ms after launch", phase, millis,
+                Thread.currentThread().getName(), sinceLaunch()));
+        return result;
     }
 
-    public void startGame() {
-        // Creating a new instance of SplashScreen with a duration of 3 seconds
-        SplashScreen splash = new SplashScreen(3);
-        // Displaying the splash screen
-        splash.showSplashWindow();
-        // Creating a new instance of GameView, which will handle the display of the game
-        GameView gameView = new GameView();
-        // Creating a new instance of GameModel, which will manage the game's data and state
-        GameModel gameModel = new GameModel();
-        // The GameController will handle the interaction between the model and view
-        GameController gameController = new GameController(gameModel, gameView);
+    /**
+     * Records the time to the first frame once the window opens, and prints the timings if asked to.
+     *
+     * @param frame The game window
+     */
+    private void watchFirstFrame(JFrame frame) {
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                frame.removeWindowListener(this);
+                timings.add(String.format("%-10s %6d ms after launch", "window", sinceLaunch()));
+                if (printTimings) {
+                    synchronized (timings) {
+                        timings.forEach(System.err::println);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the time since the process started.
+     *
+     * @return The time since the process started, in milliseconds
+     */
+    private long sinceLaunch() {
+        return Duration.between(launched, Instant.now()).toMillis();
     }
 
+    /**
+     * Loads the window icon and the text of every language, which are cached, so the window does not wait for
+     * the disk.
+     */
+    private static void preloadResources() {
+        new ImageIcon(Game.class.getClassLoader().getResource("resources/gl.png"));
+        for (String language : new String[]{"en", "fr"}) {
+            for (Languages text : Languages.values()) {
+                text.get(language);
+            }
+        }
+    }
 
+    /**
+     * Steps a small random soup, so the classes of the engine are loaded and its step is compiled before the
+     * first run.
+     */
+    private static void warmUpEngine() {
+        BitGrid cells = new BitGrid(WARM_UP_SIZE, WARM_UP_SIZE);
+        new Soup(0, Soup.DEFAULT_DENSITY).fill(cells);
+        for (int i = 0; i < WARM_UP_GENERATIONS; i++) {
+            cells.step(Rule.CONWAY);
+        }
+    }
 }
@@ -1,52 +1,44 @@
 package main;
 
+import java.util.Locale;
+import java.util.ResourceBundle;
+
 /**
- * Enum that contains all the text for the program
+ * Enum that contains all the text for the program, the constants naming the keys of the resource bundles
+ * {@code resources/Languages.properties} (English) and {@code resources/Languages_fr.properties} (French).
  */
 public enum Languages {
 
-    GAME("Game", "Jeu"), LANGUAGE("Language", "Langue"),
-    HELP("Help", "Aide"),
-    RANDOM("Random", "Aléatoire"), MANUAL("Manual", "Manuel"),
-    MODEL("Model:", "Modèle :"), MULTICOLOUR("Multicolour", "Multicolore"),
-    COLOUR("Color", "Couleur"), START("Start", "Commencer"), STEPS("Steps:", "Pas :"),
-    EXEC("Exec: ", "Exéc"), STOP("Stop", "Arrêt:"), NEW("New", "Nouvelle"), SOLUTION("Solution", "Solution"),
-    EXIT("Exit", "Sortie"), COLOURS("Colours", "Couleurs"), ABOUT("About", "À propos"),
-    ENGLISH("English", "Anglais"), FRENCH("French", "Français"), DESCRIPTION("Conway's Game of Life is a cellular automaton, invented by John Conway.\nIt is made up of a grid of cells which live or die based on a mathematical rule.", "Le jeu de la vie de Conway est un automate cellulaire inventé par John Conway.\nIl est constitué d'une grille de cellules qui vivent ou meurent selon une règle mathématique.");
+    GAME, LANGUAGE, HELP,
+    RANDOM, SEED, DENSITY, MANUAL, MODEL, MULTICOLOUR, AGE_COLOUR,
+    COLOUR, START, STEPS, SPEED, EXEC, STABILIZED, STOP, BACK, GO_TO, NEW, SOLUTION,
+    EXIT, UNBOUNDED, WIDE, EDGES, DEAD_EDGES, TORUS, MIRROR, OVERLAY,
+    EXPLORER, RULES, SOUPS, GENERATIONS, RULE, BINARY, BEHAVIOUR, PERIOD, SETTLED,
+    FINAL_DENSITY, DIES, STABLE, OSCILLATES, GROWS, CHAOTIC,
+    IMPORT, EXPORT, LOADING, COLOURS, ABOUT,
+    ENGLISH, FRENCH, DESCRIPTION;
 
     /**
-     * English translation
-     */
-    private final String en;
-    /**
-     * French translation
+     * Base name of the resource bundles
      */
-    private final String fr;
+    private static final String BUNDLE = "resources.Languages";
 
     /**
-     * Constructor that sets the languages
-     *
-     * @param en - English translation
-     * @param fr - French translation
+     * Loads the bundles without falling back to the language of the machine, so a language without a bundle
+     * shows the English text of the base bundle
      */
-    private Languages(String en, String fr) {
-        this.en = en;
-        this.fr = fr;
-    }
+    private static final ResourceBundle.Control CONTROL =
+            ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES);
 
     /**
      * Getter for the text
      *
-     * @param language - Determines the language
+     * @param language - Determines the language, such as "en" or "fr"
      * @return - The text in the correct language
      */
     public String get(String language) {
-        // returns the correct language
-        if (language.equals("en")) {
-            return this.en;
-        } else {
-            return this.fr;
-        }
+        // bundles are cached, so switching back and forth does not read them again
+        return ResourceBundle.getBundle(BUNDLE, Locale.forLanguageTag(language), Languages.class.getClassLoader(),
+                CONTROL).getString(name());
     }
-
 }
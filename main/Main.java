@@ -1,7 +1,24 @@
 package main;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class Main {
     public static void main(String[] args) {
-        Game game = new Game();
+        List<String> options = Arrays.asList(args);
+        // the batch runner never touches the window classes, so AWT is not even loaded
+        if (options.contains("--headless")) {
+            BatchRunner.main(args);
+            return;
+        }
+        int splashMillis = Game.DEFAULT_SPLASH_MILLIS;
+        int index = options.indexOf("--splash-millis");
+        if (index >= 0 && index + 1 < args.length) {
+            splashMillis = Integer.parseInt(args[index + 1]);
+        }
+        if (options.contains("--no-splash")) {
+            splashMillis = -1;
+        }
+        Game game = new Game(splashMillis, options.contains("--startup-timings"));
     }
 }
@@ -9,23 +9,27 @@ public class SplashScreen extends JWindow {
      */
     private static final long serialVersionUID = 6248477390124803341L;
     /**
-     * Splash screen duration
+     * Shortest time the splash screen stays up, in milliseconds
      */
-    private final int duration;
+    private final int minimumMillis;
+    /**
+     * When the splash screen was shown, from {@link System#nanoTime()}
+     */
+    private long shownAt;
 
 
     /**
-     * Default constructor. Sets the show time of the splash screen.
+     * Default constructor. Sets the shortest show time of the splash screen.
      *
-     * @param duration Duration in seconds
+     * @param minimumMillis Shortest time the splash screen stays up, in milliseconds
      */
-    public SplashScreen(int duration) {
-        this.duration = duration * 1000;
+    public SplashScreen(int minimumMillis) {
+        this.minimumMillis = minimumMillis;
     }
 
     /**
-     * Shows a splash screen in the center of the desktop for the amount of time
-     * given in the constructor.
+     * Shows a splash screen in the center of the desktop, on top of the other windows, until it is closed.
+     * Returns at once, so the game can start up behind it.
      */
     public void showSplashWindow() {
         // create content pane
@@ -55,15 +59,26 @@ public class SplashScreen extends JWindow {
         content.add(demo, BorderLayout.SOUTH);
         // replace the window content pane with the content JPanel
         setContentPane(content);
+        // stay in front of the game window opening behind it
+        setAlwaysOnTop(true);
         // make the splash window visible
         setVisible(true);
+        shownAt = System.nanoTime();
+    }
 
-        try {
-            Thread.sleep(duration);
-        } catch (InterruptedException e) {
-            /* log an error here? *//* e.printStackTrace(); */
+    /**
+     * Closes the splash screen once it has been up for the shortest time given in the constructor, without
+     * blocking the Swing thread in the meantime.
+     */
+    public void closeSplashWindow() {
+        long remaining = minimumMillis - (System.nanoTime() - shownAt) / 1_000_000;
+        if (remaining <= 0) {
+            // destroy the window and release all resources
+            dispose();
+            return;
         }
-        // destroy the window and release all resources
-        dispose();
+        Timer timer = new Timer((int) remaining, e -> dispose());
+        timer.setRepeats(false);
+        timer.start();
     }
 }
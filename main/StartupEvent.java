@@ -0,0 +1,25 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event emitted for every phase of starting the game, lasting as long as the phase. Print them
+ * with {@code jfr print --events gameoflife.Startup} to see which phases ran side by side.
+ */
+@Name("gameoflife.Startup")
+@Label("Startup Phase")
+@Category("Game of Life")
+@Description("A phase of starting the game")
+@StackTrace(false)
+class StartupEvent extends jdk.jfr.Event {
+
+    /**
+     * The name of the phase, such as {@code model}.
+     */
+    @Label("Phase")
+    String phase;
+}
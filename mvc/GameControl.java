@@ -0,0 +1,228 @@
+package mvc;
+
+import engine.Rule;
+import engine.SimulationLoop;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Exposes a running game to JMX clients such as jconsole. Operations arrive on the threads of the MBean
+ * server and are handed over to the thread owning what they touch: buttons and fields are only used on the
+ * event dispatch thread, the cells only on the simulation thread, and every operation waits for its result
+ * so the client sees the outcome or the error.
+ */
+public class GameControl implements GameControlMBean {
+
+    /**
+     * The name the game is registered under.
+     */
+    public static final String NAME = "gameoflife:type=GameControl";
+
+    /**
+     * The longest an operation waits for the thread it was handed to, in seconds.
+     */
+    private static final long TIMEOUT = 30;
+
+    /**
+     * The controller driving the window.
+     */
+    private final GameController controller;
+
+    /**
+     * The model holding the cells.
+     */
+    private final GameModel model;
+
+    /**
+     * The loop running the simulation.
+     */
+    private final SimulationLoop loop;
+
+    /**
+     * Constructs a GameControl for a game.
+     *
+     * @param controller The controller driving the window.
+     * @param model      The model holding the cells.
+     * @param loop       The loop running the simulation.
+     */
+    GameControl(GameController controller, GameModel model, SimulationLoop loop) {
+        this.controller = controller;
+        this.model = model;
+        this.loop = loop;
+    }
+
+    /**
+     * Registers a game with the platform MBean server, replacing the game registered before if any. A
+     * failure is reported but does not prevent the game from running.
+     *
+     * @param controller The controller driving the window.
+     * @param model      The model holding the cells.
+     * @param loop       The loop running the simulation.
+     */
+    static void register(GameController controller, GameModel model, SimulationLoop loop) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        GameControl control = new GameControl(controller, model, loop);
+        try {
+            ObjectName name = new ObjectName(NAME);
+            try {
+                server.registerMBean(control, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(control, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register " + NAME + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!onSwing(() -> controller.startSim(false))) {
+            throw new IllegalStateException("The steps entered are not a positive number");
+        }
+    }
+
+    @Override
+    public void stop() {
+        onSwing(() -> {
+            controller.stopSim();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        return loop.isRunning();
+    }
+
+    @Override
+    public long getGeneration() {
+        return loop.getGeneration();
+    }
+
+    @Override
+    public long getPopulation() {
+        return onSimulation(() -> model.getCells().population());
+    }
+
+    @Override
+    public double getGenerationsPerSecond() {
+        return loop.getTelemetry().getGenerationRate();
+    }
+
+    @Override
+    public double getStepLatencyP99Millis() {
+        return loop.getTelemetry().getStepLatency().getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public String getRule() {
+        return onSimulation(() -> model.getRule().toString());
+    }
+
+    @Override
+    public void setRule(String rule) {
+        Rule parsed = Rule.parse(rule);
+        onSwing(() -> {
+            controller.setRule(parsed);
+            return null;
+        });
+    }
+
+    @Override
+    public long getStepLimit() {
+        return onSwing(controller::getStepLimit);
+    }
+
+    @Override
+    public void setStepLimit(long stepLimit) {
+        if (stepLimit <= 0) {
+            throw new IllegalArgumentException("The step limit must be positive: " + stepLimit);
+        }
+        onSwing(() -> {
+            controller.setStepLimit(stepLimit);
+            return null;
+        });
+    }
+
+    @Override
+    public void saveSnapshot(String path) throws IOException {
+        try {
+            onSimulation(() -> {
+                model.saveSnapshot(Path.of(path), loop.getGeneration());
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Runs a task on the event dispatch thread and waits for it.
+     *
+     * @param task The task to run.
+     * @param <T>  The type of the result.
+     * @return The result of the task.
+     */
+    private <T> T onSwing(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        SwingUtilities.invokeLater(future);
+        return await(future);
+    }
+
+    /**
+     * Runs a task reading the cells on the simulation thread between two generations and waits for it. Reads
+     * leave the run alone, so polling does not stop a run from detecting that it settled.
+     *
+     * @param task The task to run.
+     * @param <T>  The type of the result.
+     * @return The result of the task.
+     */
+    private <T> T onSimulation(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        loop.read(future);
+        return await(future);
+    }
+
+    /**
+     * Waits for a task handed to another thread, rethrowing what it threw as an unchecked exception so it
+     * reaches the JMX client.
+     *
+     * @param future The task.
+     * @param <T>    The type of the result.
+     * @return The result of the task.
+     */
+    private static <T> T await(FutureTask<T> future) {
+        try {
+            return future.get(TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the game", e);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new IllegalStateException("The game did not answer within " + TIMEOUT + " seconds", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package mvc;
+
+import java.io.IOException;
+
+/**
+ * Management interface of a running game, registered with the platform MBean server as
+ * {@value GameControl#NAME}, so it can be controlled from jconsole or any JMX client.
+ */
+public interface GameControlMBean {
+
+    /**
+     * Starts or resumes the simulation, as the Start button does.
+     *
+     * @throws IllegalStateException If the steps entered are not a positive number.
+     */
+    void start();
+
+    /**
+     * Stops the simulation after the current generation, as the Stop button does.
+     */
+    void stop();
+
+    /**
+     * Checks whether the simulation is running.
+     *
+     * @return {@code true} if a run is in progress.
+     */
+    boolean isRunning();
+
+    /**
+     * Gets the number of the current generation.
+     *
+     * @return The generation.
+     */
+    long getGeneration();
+
+    /**
+     * Counts the living cells of the current generation.
+     *
+     * @return The population.
+     */
+    long getPopulation();
+
+    /**
+     * Gets the number of generations run per second, measured over the last half second of steps.
+     *
+     * @return The rate.
+     */
+    double getGenerationsPerSecond();
+
+    /**
+     * Gets the 99th percentile of the time a step took in the current run.
+     *
+     * @return The latency in milliseconds.
+     */
+    double getStepLatencyP99Millis();
+
+    /**
+     * Gets the rule the cells evolve by.
+     *
+     * @return The rule in {@code B3/S23} notation.
+     */
+    String getRule();
+
+    /**
+     * Sets the rule the cells evolve by from the next generation on.
+     *
+     * @param rule The rule in {@code B3/S23} notation or as the 18 binary digits of the Model field.
+     */
+    void setRule(String rule);
+
+    /**
+     * Gets the generation runs stop at.
+     *
+     * @return The number of steps.
+     */
+    long getStepLimit();
+
+    /**
+     * Sets the generation runs stop at, from the next start on.
+     *
+     * @param stepLimit The number of steps.
+     */
+    void setStepLimit(long stepLimit);
+
+    /**
+     * Saves the current generation to a binary snapshot on the machine running the game.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    void saveSnapshot(String path) throws IOException;
+}
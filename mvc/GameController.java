@@ -1,12 +1,32 @@
 package mvc;
 
+import engine.Boundary;
+import engine.CycleDetector;
+import engine.HashLife;
+import engine.LifeEngine;
+import engine.Rule;
+import engine.SimulationLoop;
+import engine.Snapshot;
+import engine.Soup;
+import engine.SparseUniverse;
+import engine.Telemetry;
+import io.PatternFormat;
+import io.SnapshotFile;
 import main.Languages;
 
 import java.awt.Color;
 import java.awt.event.ActionListener;
-import java.util.Random;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Function;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
  * Handles user input and decides how to respond
@@ -28,19 +48,29 @@ public class GameController {
     private int selectedApp;
 
     /**
-     * Timer used for managing game update tasks at regular intervals.
+     * HashLife engine used by the "Solution" mode to jump over large numbers of generations.
      */
-    private Timer timer;
+    private final HashLife hashLife = new HashLife();
 
     /**
-     * A String to hold the number of steps the simulation should run for.
+     * Sparse engine used when the universe is unbounded, stepping only the tiles with live activity.
      */
-    private String steps;
+    private final SparseUniverse sparseUniverse = new SparseUniverse();
+
+    /**
+     * Thread running the simulation; the model is only touched on this thread.
+     */
+    private final SimulationLoop loop;
 
     /**
-     * An array used as a counter, often for keeping track of the number of executions in the simulation.
+     * Timer rendering the newest published generation at regular intervals on the Swing thread.
      */
-    final int[] counter = {0};
+    private final Timer timer;
+
+    /**
+     * A String to hold the number of steps the simulation should run for.
+     */
+    private String steps;
 
     /**
      * A flag indicating whether the game is in multicolour mode, where cells may display in multiple colors.
@@ -48,15 +78,41 @@ public class GameController {
     private boolean multicolour = false;
 
     /**
-     * The ActionListener for grid buttons, defining the action to take when grid elements are interacted with.
+     * A flag indicating whether cells are coloured by their age, as a heatmap.
      */
-    private ActionListener gridAL;
+    private boolean ageColour = false;
+
+    /**
+     * The MouseListener for the grid canvas, defining the action to take when grid cells are clicked.
+     */
+    private MouseListener gridML;
 
     /**
      * The currently selected color for drawing on the grid, defaulting to black.
      */
     private Color selectedColor = Color.BLACK;
 
+    /**
+     * The position of the speed slider.
+     */
+    private int speed;
+
+    /**
+     * A flag indicating whether the running simulation jumps ahead as fast as possible, ignoring the speed.
+     */
+    private boolean skipping;
+
+    /**
+     * Writes the status shown next to the steps in a given language, so it can be shown again when the language
+     * changes.
+     */
+    private Function<String, String> status = language -> Languages.EXEC.get(language) + " 0";
+
+    /**
+     * What lies beyond the edges of the grid, as chosen in the Edges menu.
+     */
+    private Boundary boundary = Boundary.DEAD;
+
     /**
      * A flag indicating whether the game is in draw mode, allowing the user to interact with the grid.
      */
@@ -71,8 +127,44 @@ public class GameController {
     public GameController(GameModel model, GameView view) {
         this.model = model;
         this.view = view;
+        this.loop = new SimulationLoop(model::getCells);
+        loop.setRecorder(model::recordHistory);
 
         initMainWindow();
+        // render at most once per frame, dropping generations the screen cannot keep up with
+        timer = new Timer(loop.getPacer().getFrameMillis(), e -> render());
+        timer.start();
+        // the first registration starts the platform MBean server, which takes a while, so the window
+        // does not wait for it
+        Thread control = new Thread(() -> GameControl.register(this, model, loop), "jmx-register");
+        control.setDaemon(true);
+        control.start();
+    }
+
+    /**
+     * Renders the newest generation published by the simulation, if there is one.
+     */
+    private void render() {
+        Snapshot snapshot = loop.takeSnapshot();
+        if (snapshot == null) {
+            return;
+        }
+        view.updateGrid(snapshot.getCells());
+        if (view.getOverlay().isSelected()) {
+            Telemetry telemetry = loop.getTelemetry();
+            view.getCanvas().setOverlay(String.format("%.0f gens/s | step p99 %.2f ms | render p99 %.2f ms | pop %d",
+                    telemetry.getGenerationRate(), telemetry.getStepLatency().getPercentile(99) / 1e6,
+                    telemetry.getRenderLatency().getPercentile(99) / 1e6, telemetry.getPopulation()));
+        }
+        long generation = snapshot.getGeneration();
+        if (snapshot.getPeriod() > 0) {
+            long cycleStart = snapshot.getCycleStart();
+            long period = snapshot.getPeriod();
+            showStatus(language -> String.format(Languages.STABILIZED.get(language), cycleStart, period));
+        } else {
+            showStatus(language -> Languages.EXEC.get(language) + " " + generation);
+        }
+        loop.recycle(snapshot);
     }
 
     /**
@@ -100,108 +192,101 @@ public class GameController {
      * Adds listeners to the grid, enabling interaction with individual cells.
      */
     private void addGridListeners() {
-        // action listener that just changes the colour
-        gridAL = e -> {
-            JButton source = (JButton) e.getSource();
-            if (!source.getBackground().equals(Color.WHITE)) {
-                source.setBackground(Color.WHITE);
-            } else {
-                source.setBackground(selectedColor);
-            }
-            if (multicolour) {
-                multiColour();
+        // never stack the listener on the canvas
+        view.getCanvas().removeMouseListener(gridML);
+        // mouse listener that just toggles the cell under the pointer
+        gridML = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                int row = view.getCanvas().getRowAt(e.getY());
+                int col = view.getCanvas().getColAt(e.getX());
+                if (row < 0 || col < 0) {
+                    return;
+                }
+                loop.submit(() -> model.setAlive(row, col, !model.isAlive(row, col)));
             }
         };
-        // applies action listener
-        for (int i = 0; i < view.getRows(); i++) {
-            for (int j = 0; j < view.getCols(); j++) {
-                view.getGrid()[i][j].addActionListener(gridAL);
-                model.setGrid(view.getGrid());
-            }
-        }
+        // applies mouse listener
+        view.getCanvas().addMouseListener(gridML);
     }
 
     /**
-     * Removes action listeners from the grid to disable interaction.
+     * Removes listeners from the grid to disable interaction.
      */
     private void removeGridListeners() {
-        // sync the grid
-        view.setGrid(model.getGrid());
-        // remove all listeners
-        for (int i = 0; i < view.getRows(); i++) {
-            for (int j = 0; j < view.getCols(); j++) {
-                view.getGrid()[i][j].removeActionListener(gridAL);
-            }
-        }
-        // update the model
-        model.setGrid(view.getGrid());
+        view.getCanvas().removeMouseListener(gridML);
     }
 
     /**
      * Additional initialization for the main window after an application is selected.
      */
     public void initMainWindow() {
-        view.createGameWindow("en");
+        view.createGameWindow(view.getLanguage());
         // update steps
         this.steps = view.getSteps().getText();
-        // update the model
-        model.setRows(view.getRows());
-        model.setCols(view.getCols());
+        this.speed = view.getSpeed().getValue();
+        // update the model on the simulation thread
+        int rows = view.getRows();
+        int cols = view.getCols();
+        String binaryRule = view.getModel().getText();
+        loop.submit(() -> {
+            model.setRows(rows);
+            model.setCols(cols);
+            model.setBinaryRule(binaryRule);
+        });
+        view.getCanvas().setCellColour(selectedColor);
+        view.getCanvas().setMulticolour(multicolour);
+        view.getCanvas().setAgeColour(ageColour);
         addGridListeners();
         // validate input
-        model.setBinaryRule(view.getModel().getText());
         view.getModel().addActionListener(e -> {
-            if (view.getModel().getText().length() != 18) {
+            // compile the rule once here so the simulation only does table lookups
+            Rule rule;
+            try {
+                rule = Rule.parse(view.getModel().getText());
+            } catch (IllegalArgumentException ex) {
                 view.getModel().setText("000100000001100000");
+                rule = Rule.CONWAY;
             }
 
-            for (int i = 0; i < 18; i++) {
-                if (view.getModel().getText().charAt(i) != '0' && view.getModel().getText().charAt(i) != '1') {
-                    view.getModel().setText("000100000001100000");
-                }
-            }
-
-            model.setBinaryRule(view.getModel().getText());
+            Rule compiled = rule;
+            loop.submit(() -> model.setRule(compiled));
         });
         // add listeners to the various components throughout the window:
         view.getSteps().addActionListener(e -> this.steps = view.getSteps().getText());
 
-        view.getStart().addActionListener(e -> startSim(false));
-
-        view.getStop().addActionListener(e -> {
-            timer.stop();
-            if (!drawMode) {
-                removeGridListeners();
+        view.getSpeed().addChangeListener(e -> {
+            speed = view.getSpeed().getValue();
+            if (!skipping) {
+                loop.getPacer().setTargetRate(targetRate());
             }
-            view.getExec().setText("Exec: " + (counter[0]));
         });
 
-        view.getRand().addActionListener(e -> {
-            drawMode = false;
-            removeGridListeners();
-            for (int i = 0; i < model.getRows(); i++) {
-                for (int j = 0; j < model.getCols(); j++) {
-                    Random rand = new Random();
-                    int deadOrAlive = rand.nextInt(4); // 25%
-                    if (deadOrAlive == 1) {
-                        view.getGrid()[i][j].setBackground(selectedColor);
-                    } else {
-                        view.getGrid()[i][j].setBackground(Color.WHITE);
-                    }
+        view.getStart().addActionListener(e -> startSim(false));
 
-                }
-                if (view.getMultiColour().isSelected()) {
-                    multiColour();
-                }
-                model.setGrid(view.getGrid());
+        view.getStop().addActionListener(e -> stopSim());
+
+        view.getBack().addActionListener(e -> rewind(loop.getGeneration() - 1));
+
+        ActionListener goTo = e -> {
+            try {
+                rewind(Long.parseLong(view.getGoTo().getText().trim()));
+            } catch (NumberFormatException ex) {
+                showError(Languages.GO_TO.get(view.getLanguage()), ex.getMessage());
             }
-        });
+        };
+        view.getGoTo().addActionListener(goTo);
+        view.getGo().addActionListener(goTo);
+
+        view.getRand().addActionListener(e -> randomSoup(true));
+        ActionListener regenerate = e -> randomSoup(false);
+        view.getSeed().addActionListener(regenerate);
+        view.getDensity().addActionListener(regenerate);
 
         view.getManual().addActionListener(e -> {
             drawMode = true;
             addGridListeners();
             clearGrid();
-            model.setGrid(view.getGrid());
         });
 
         view.getMultiColour().addActionListener(e -> {
@@ -213,150 +298,365 @@ public class GameController {
                 removeColour();
             }
         });
+
+        view.getAgeColour().addActionListener(e -> {
+            ageColour = view.getAgeColour().isSelected();
+            view.getCanvas().setAgeColour(ageColour);
+            updateTracking();
+        });
         ActionListener colorChooser = e -> {
-            selectedColor = JColorChooser.showDialog(null, "Pick a color: ", Color.WHITE);
-            model.setSelectedColor(selectedColor);
-            view.setGrid(model.getGrid());
+            Color chosen = JColorChooser.showDialog(null, "Pick a color: ", Color.WHITE);
+            if (chosen == null) {
+                return;
+            }
+            selectedColor = chosen;
+            view.getCanvas().setCellColour(selectedColor);
+            loop.refresh();
         };
 
         view.getColour().addActionListener(colorChooser);
         view.getColours().addActionListener(colorChooser);
 
         view.getNewGame().addActionListener(e -> {
-            counter[0] = 0;
-            view.getExec().setText("Exec: " + (counter[0]));
+            loop.submit(() -> loop.setGeneration(0));
             drawMode = true;
             clearGrid();
         });
 
         view.getSolution().addActionListener(e -> startSim(true));
 
+        view.getDeadEdges().setSelected(boundary == Boundary.DEAD);
+        view.getTorus().setSelected(boundary == Boundary.TORUS);
+        view.getMirror().setSelected(boundary == Boundary.MIRROR);
+        view.getDeadEdges().addActionListener(e -> setBoundary(Boundary.DEAD));
+        view.getTorus().addActionListener(e -> setBoundary(Boundary.TORUS));
+        view.getMirror().addActionListener(e -> setBoundary(Boundary.MIRROR));
+
+        view.getOverlay().addActionListener(e -> {
+            if (!view.getOverlay().isSelected()) {
+                view.getCanvas().setOverlay(null);
+            }
+        });
+
+        view.getExplorer().addActionListener(e -> new RuleExplorer(view.getLanguage(), this::setRule).show());
+
+        view.getImportPattern().addActionListener(e -> importPattern());
+
+        view.getExportPattern().addActionListener(e -> exportPattern());
+
         view.getExit().addActionListener(e -> view.getGameFrame().dispose());
 
         view.getAbout().addActionListener(e -> JOptionPane.showMessageDialog(null, Languages.DESCRIPTION.get(view.getLanguage())));
 
-        view.getEng().addActionListener(e -> {
-            view.setLanguage("en");
-            JButton[][] previous = model.getGrid();
-            view.getGameFrame().dispose();
-            view.createGameWindow( "en");
-            initMainWindow();
-            view.setGrid(previous);
-            model.setGrid(previous);
-            view.updateGrid();
-            if (multicolour) {
-                view.getMultiColour().setSelected(true);
+        view.getEng().addActionListener(e -> setLanguage("en"));
+
+        view.getFr().addActionListener(e -> setLanguage("fr"));
+    }
+
+    /**
+     * Stops the simulation and moves the grid to the newest recorded generation that is not after the given
+     * one. Generations that were evicted from the history, or never computed, cannot be reached.
+     * @param generation - The generation to go to
+     */
+    private void rewind(long generation) {
+        loop.stop();
+        loop.submit(() -> {
+            long restored = model.rewind(generation);
+            if (restored >= 0) {
+                loop.setGeneration(restored);
             }
         });
+    }
 
-        view.getFr().addActionListener(e -> {
-            view.setLanguage("fr");
-            JButton[][] previous = model.getGrid();
-            view.getGameFrame().dispose();
-            view.createGameWindow( "fr");
-            initMainWindow();
-            view.setGrid(previous);
-            model.setGrid(previous);
-            view.updateGrid();
-            if (multicolour) {
-                view.getMultiColour().setSelected(true);
+    /**
+     * Creates a file chooser for the pattern formats.
+     * @return - The file chooser
+     */
+    private JFileChooser patternChooser() {
+        JFileChooser chooser = new JFileChooser();
+        String[] extensions = Arrays.copyOf(PatternFormat.allExtensions(), PatternFormat.allExtensions().length + 1);
+        extensions[extensions.length - 1] = SnapshotFile.EXTENSION;
+        chooser.setFileFilter(new FileNameExtensionFilter("Patterns", extensions));
+        for (PatternFormat format : PatternFormat.values()) {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(format.getDescription(), format.getExtensions()));
+        }
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("Snapshot", SnapshotFile.EXTENSION));
+        return chooser;
+    }
+
+    /**
+     * Fills the grid with a random soup of the density entered, on the simulation thread, and shows its seed
+     * so the same soup can be regenerated by entering the seed again.
+     * @param newSeed - whether to draw a new seed rather than use the one entered
+     */
+    private void randomSoup(boolean newSeed) {
+        Soup soup;
+        try {
+            double density = Double.parseDouble(view.getDensity().getText().trim()) / 100;
+            String seed = view.getSeed().getText().trim();
+            soup = (newSeed || seed.isEmpty()) ? Soup.random(density) : new Soup(Long.parseLong(seed), density);
+        } catch (IllegalArgumentException ex) {
+            showError(Languages.RANDOM.get(view.getLanguage()), ex.getMessage());
+            return;
+        }
+        view.getSeed().setText(Long.toString(soup.getSeed()));
+        drawMode = false;
+        removeGridListeners();
+        loop.submit(() -> {
+            model.fillSoup(soup);
+            loop.setGeneration(0);
+        });
+    }
+
+    /**
+     * Shows an error on the Swing thread.
+     * @param title - Title of the dialog
+     * @param message - The error
+     */
+    private void showError(String title, String message) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(view.getGameFrame(), message, title,
+                JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Lets the user pick a pattern file and loads it into the grid on the simulation thread, showing the
+     * progress in the execution label.
+     */
+    private void importPattern() {
+        String language = view.getLanguage();
+        JFileChooser chooser = patternChooser();
+        if (chooser.showOpenDialog(view.getGameFrame()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path path = chooser.getSelectedFile().toPath();
+        if (SnapshotFile.isSnapshot(path)) {
+            loop.stop();
+            loop.submit(() -> {
+                try {
+                    loop.setGeneration(model.loadSnapshot(path));
+                } catch (IOException | IllegalArgumentException ex) {
+                    showError(Languages.IMPORT.get(language), ex.getMessage());
+                }
+                String rule = model.getRule().toBinaryString();
+                Soup soup = model.getSoup();
+                SwingUtilities.invokeLater(() -> {
+                    view.getModel().setText(rule);
+                    if (soup != null) {
+                        view.getSeed().setText(Long.toString(soup.getSeed()));
+                        view.getDensity().setText(Double.toString(soup.getDensity() * 100));
+                    }
+                });
+            });
+            return;
+        }
+        try {
+            PatternFormat.forPath(path);
+        } catch (IllegalArgumentException ex) {
+            showError(Languages.IMPORT.get(language), ex.getMessage());
+            return;
+        }
+        long size = Math.max(1, chooser.getSelectedFile().length());
+        loop.stop();
+        loop.submit(() -> {
+            int[] shown = {-1};
+            try {
+                model.importPattern(path, bytes -> {
+                    int percent = (int) (100 * bytes / size);
+                    if (percent != shown[0]) {
+                        shown[0] = percent;
+                        SwingUtilities.invokeLater(() -> showStatus(
+                                text -> Languages.LOADING.get(text) + " " + percent + "%"));
+                    }
+                });
+            } catch (IOException ex) {
+                showError(Languages.IMPORT.get(language), ex.getMessage());
             }
+            loop.setGeneration(0);
+            String rule = model.getRule().toBinaryString();
+            SwingUtilities.invokeLater(() -> view.getModel().setText(rule));
         });
     }
 
     /**
-     * Clears the grid cells and makes them all white.
+     * Lets the user pick a file and saves the grid to it on the simulation thread. Files ending in
+     * {@code .golsnap} are saved as binary snapshots, files without a known extension as RLE.
      */
-    private void clearGrid() {
-        for (int i = 0; i < model.getRows(); i++) {
-            for (int j = 0; j < model.getCols(); j++) {
-                view.getGrid()[i][j].setBackground(Color.WHITE);
+    private void exportPattern() {
+        String language = view.getLanguage();
+        JFileChooser chooser = patternChooser();
+        if (chooser.showSaveDialog(view.getGameFrame()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        try {
+            if (!SnapshotFile.isSnapshot(file.toPath())) {
+                PatternFormat.forPath(file.toPath());
             }
+        } catch (IllegalArgumentException ex) {
+            file = new File(file.getPath() + "." + PatternFormat.RLE.getExtensions()[0]);
         }
-        model.setGrid(view.getGrid());
+        Path path = file.toPath();
+        loop.submit(() -> {
+            try {
+                if (SnapshotFile.isSnapshot(path)) {
+                    model.saveSnapshot(path, loop.getGeneration());
+                } else {
+                    model.exportPattern(path);
+                }
+            } catch (IOException ex) {
+                showError(Languages.EXPORT.get(language), ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Clears the grid cells and makes them all white.
+     */
+    private void clearGrid() {
+        loop.submit(model::clear);
     }
 
     /**
      * Applies the rules to make the grid multicoloured.
      */
     private void multiColour() {
-        model.setGrid(view.getGrid());
-        for (int i = 0; i < model.getRows(); i++) {
-            for (int j = 0; j < model.getCols(); j++) {
-                if (model.getGrid()[i][j].getBackground() != Color.WHITE) {
-                    if (model.checkNeighbours(i, j) == 0) {
-                        model.getGrid()[i][j].setBackground(Color.RED);
-                    } else if (model.checkNeighbours(i, j) == 1) {
-                        model.getGrid()[i][j].setBackground(Color.GREEN);
-                    } else if (model.checkNeighbours(i, j) == 2) {
-                        model.getGrid()[i][j].setBackground(Color.BLUE);
-                    } else if (model.checkNeighbours(i, j) == 3) {
-                        model.getGrid()[i][j].setBackground(Color.YELLOW);
-                    } else if (model.checkNeighbours(i, j) == 4) {
-                        model.getGrid()[i][j].setBackground(Color.MAGENTA);
-                    } else if (model.checkNeighbours(i, j) == 5) {
-                        model.getGrid()[i][j].setBackground(Color.CYAN);
-                    } else if (model.checkNeighbours(i, j) == 6) {
-                        model.getGrid()[i][j].setBackground(Color.decode("#5aa1d6"));
-                    } else if (model.checkNeighbours(i, j) == 7) {
-                        model.getGrid()[i][j].setBackground(Color.decode("#e69873"));
-                    } else if (model.checkNeighbours(i, j) == 8) {
-                        model.getGrid()[i][j].setBackground(Color.decode("#8e7cc3"));
-                    }
-                }
-            }
-        }
-        view.setGrid(model.getGrid());
+        view.getCanvas().setMulticolour(true);
+        updateTracking();
     }
 
     /**
      * Removes colour from the cells.
      */
     private void removeColour() {
-        model.setGrid(view.getGrid());
-        for (int i = 0; i < model.getRows(); i++) {
-            for (int j = 0; j < model.getCols(); j++) {
-                if (model.getGrid()[i][j].getBackground() != Color.BLACK && model.getGrid()[i][j].getBackground() != Color.WHITE) {
-                    model.getGrid()[i][j].setBackground(selectedColor);
-                }
-            }
-        }
-        view.setGrid(model.getGrid());
+        view.getCanvas().setMulticolour(false);
+        updateTracking();
+    }
+
+    /**
+     * Lets the model track neighbour counts and ages while a colour mode needs them, and repaints the grid.
+     */
+    private void updateTracking() {
+        boolean tracking = multicolour || ageColour;
+        loop.submit(() -> model.setTracking(tracking));
+    }
+
+    /**
+     * Converts the position of the speed slider into generations per second, doubling with every notch.
+     * @return - The rate, 0 for as fast as possible at the rightmost position
+     */
+    private double targetRate() {
+        return (speed >= view.getSpeed().getMaximum()) ? 0 : 1 << speed;
     }
 
     /**
-     * Begins the simulations
-     * @param skip - Determines whether executions will be skipped
+     * Stops the simulation after the current generation; must be called on the Swing thread
      */
-    private void startSim(boolean skip) {
+    void stopSim() {
+        loop.stop();
         if (!drawMode) {
             removeGridListeners();
         }
-        timer = new Timer((skip) ? 2 : 200, e -> {
-            counter[0]++;
-            if (!skip) {
-                view.getExec().setText("Exec: " + (counter[0]));
-                view.setGrid(model.applyRule());
-                view.updateGrid();
-                addGridListeners();
-            } else {
-                view.setGrid(model.applyRule());
-                if (counter[0] % 50 == 0) {
-                    view.getExec().setText("Exec: " + (counter[0]));
-                    view.updateGrid();
-                    addGridListeners();
-                }
-            }
+        long generation = loop.getGeneration();
+        showStatus(language -> Languages.EXEC.get(language) + " " + generation);
+    }
 
-            if (counter[0] >= Integer.parseInt(steps)) {
-                ((Timer) e.getSource()).stop();
-            }
+    /**
+     * Relabels the window in another language, leaving the simulation and the grid as they are
+     * @param language - The language to switch to
+     */
+    private void setLanguage(String language) {
+        view.setLanguage(language);
+        view.getExec().setText(status.apply(language));
+    }
 
-            if (multicolour) {
-                multiColour();
+    /**
+     * Shows a status next to the steps in the language of the window
+     * @param status - Writes the status in a given language
+     */
+    private void showStatus(Function<String, String> status) {
+        this.status = status;
+        view.getExec().setText(status.apply(view.getLanguage()));
+    }
+
+    /**
+     * Gets the generation runs stop at; must be called on the Swing thread
+     * @return - The number of steps entered, or 0 if it is not a number
+     */
+    long getStepLimit() {
+        try {
+            return Long.parseLong(steps.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Sets the generation runs stop at, as if it was entered in the steps field; must be called on the Swing thread
+     * @param limit - The number of steps
+     */
+    void setStepLimit(long limit) {
+        steps = String.valueOf(limit);
+        view.getSteps().setText(steps);
+    }
+
+    /**
+     * Replaces what lies beyond the edges of the grid on the simulation thread; must be called on the Swing thread
+     * @param boundary - The boundary to apply from the next generation on
+     */
+    private void setBoundary(Boundary boundary) {
+        this.boundary = boundary;
+        loop.submit(() -> model.setBoundary(boundary));
+    }
+
+    /**
+     * Replaces the rule on the simulation thread and shows it in the Model field; must be called on the Swing thread
+     * @param rule - The rule to apply from the next generation on
+     */
+    void setRule(Rule rule) {
+        view.getModel().setText(rule.toBinaryString());
+        loop.submit(() -> model.setRule(rule));
+    }
+
+    /**
+     * Begins the simulations on the simulation thread, unless the steps entered are not a positive number
+     * @param skip - Determines whether executions will be skipped, jumping ahead with HashLife
+     * @return - Whether the simulations began
+     */
+    boolean startSim(boolean skip) {
+        long limit = getStepLimit();
+        if (limit <= 0) {
+            showError(Languages.STEPS.get(view.getLanguage()), "The steps must be a positive number: " + steps);
+            return false;
+        }
+        if (!drawMode) {
+            removeGridListeners();
+        }
+        LifeEngine engine;
+        if (skip) {
+            engine = hashLife;
+        } else if (view.getUnbounded().isSelected()) {
+            engine = sparseUniverse;
+        } else if (view.getWide().isSelected()) {
+            engine = LifeEngine.WIDE;
+        } else {
+            engine = LifeEngine.PACKED;
+        }
+        skipping = skip;
+        loop.getPacer().setTargetRate((skip) ? 0 : targetRate());
+        loop.submit(() -> model.setEngine(engine));
+        // the grid only shows a window of the unbounded universes, which may settle while the rest does not;
+        // they step on the grid itself when its edges wrap around or mirror
+        boolean unbounded = (skip || view.getUnbounded().isSelected()) && boundary == Boundary.DEAD;
+        loop.start(limit, (unbounded) ? 0 : CycleDetector.DEFAULT_MAX_PERIOD, () -> {
+            if (skip) {
+                // jump by the largest power of two that does not overshoot the remaining steps
+                long remaining = Math.max(1, limit - loop.getGeneration());
+                hashLife.setStepExponent(63 - Long.numberOfLeadingZeros(remaining));
             }
+            model.applyRule();
+            return model.getLastAdvance();
         });
-        timer.start();
+        return true;
     }
 
 }
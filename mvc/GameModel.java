@@ -1,9 +1,25 @@
 package mvc;
 
-import java.awt.Color;
-import java.util.ArrayList;
+import engine.BitGrid;
+import engine.Boundary;
+import engine.History;
+import engine.LifeEngine;
+import engine.Rule;
+import engine.Soup;
+import io.GridSink;
+import io.PatternFormat;
+import io.PatternReader;
+import io.PatternWriter;
+import io.SnapshotFile;
 
-import javax.swing.JButton;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
 
 /**
  * Represents the data and logic
@@ -11,9 +27,9 @@ import javax.swing.JButton;
 public class GameModel {
 
     /**
-     * Holds the binary rule as a string which dictates the cell transformations in the game logic.
+     * The compiled rule which dictates the cell transformations in the game logic.
      */
-    private String binaryRule;
+    private Rule rule = Rule.CONWAY;
 
     /**
      * The number of rows in the game grid.
@@ -26,41 +42,78 @@ public class GameModel {
     private int cols;
 
     /**
-     * A 2D array of JButtonss that represents the game grid.
+     * The packed cell store the generations are computed on.
      */
-    private JButton[][] grid;
+    private BitGrid cells = new BitGrid(0, 0);
 
     /**
-     * A list of integers that define the number of neighbors that cause a dead cell to become alive.
+     * The engine advancing the cells on every call to {@link #applyRule()}.
      */
-    private final ArrayList<Integer> deadToAliveRule = new ArrayList<>(1);
+    private LifeEngine engine = LifeEngine.PACKED;
 
     /**
-     * A list of integers that define the number of neighbors that cause an alive cell to become dead.
+     * The number of generations the last call to {@link #applyRule()} advanced.
      */
-    private final ArrayList<Integer> aliveToDeadRule = new ArrayList<>(1);
+    private long lastAdvance;
 
     /**
-     * The currently selected color for alive cells.
+     * The pool generations are computed on when parallel stepping is enabled, otherwise {@code null}.
      */
-    private Color selectedColor = Color.BLACK;
+    private ForkJoinPool pool;
+
+    /**
+     * A flag indicating whether generations only re-evaluate the neighbourhoods of cells that changed.
+     */
+    private boolean incremental = true;
+
+    /**
+     * A flag indicating whether the cells track their neighbour counts and ages while stepping.
+     */
+    private boolean tracking;
+
+    /**
+     * The recent generations, which the grid can be rewound to.
+     */
+    private final History history = new History(History.DEFAULT_BUDGET);
+
+    /**
+     * The random soup the cells were last filled with, or {@code null} if they were cleared or loaded since.
+     */
+    private Soup soup;
 
     /**
      * Constructor for creating a new GameModel with initial settings.
      */
     public GameModel() {
-
-        binaryRule = "";
     }
 
     /**
-     * Sets the binary rule as a string representation for the game logic.
+     * Sets the binary rule as a string representation for the game logic. The rule is compiled once here,
+     * either from the 18-character binary notation or from the {@code B3/S23} notation.
      *
      * @param binaryRule A string representing the binary rules for cell transformation.
+     * @throws IllegalArgumentException If the string is not a valid rule.
      */
     public void setBinaryRule(String binaryRule) {
-        this.binaryRule = binaryRule;
+        this.rule = Rule.parse(binaryRule);
+    }
 
+    /**
+     * Sets the compiled rule used for the game logic.
+     *
+     * @param rule The rule to apply from the next generation on.
+     */
+    public void setRule(Rule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Gets the compiled rule used for the game logic.
+     *
+     * @return The current rule.
+     */
+    public Rule getRule() {
+        return rule;
     }
 
     /**
@@ -79,6 +132,7 @@ public class GameModel {
      */
     public void setCols(int cols) {
         this.cols = cols;
+        resize();
     }
 
     /**
@@ -88,6 +142,7 @@ public class GameModel {
      */
     public void setRows(int rows) {
         this.rows = rows;
+        resize();
     }
 
     /**
@@ -100,131 +155,306 @@ public class GameModel {
     }
 
     /**
-     * Sets the grid of buttons representing the game state.
+     * Replaces the cell store with an empty one when the size of the game grid changed.
+     */
+    private void resize() {
+        if (cells.getRows() != rows || cells.getCols() != cols) {
+            Boundary boundary = cells.getBoundary();
+            cells = new BitGrid(rows, cols);
+            cells.setBoundary(boundary);
+            cells.setPool(pool);
+            cells.setIncremental(incremental);
+            cells.setTracking(tracking);
+            engine.invalidate();
+            history.clear();
+            soup = null;
+        }
+    }
+
+    /**
+     * Enables or disables incremental stepping, where a generation only re-evaluates the neighbourhoods of
+     * the cells that changed in the previous one. Near-stable boards then cost in proportion to the changes.
      *
-     * @param grid A 2D array of {@code JButton} representing the game grid.
+     * @param incremental Whether to step incrementally.
      */
-    public void setGrid(JButton[][] grid) {
-        this.grid = grid;
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        cells.setIncremental(incremental);
     }
 
     /**
-     * Processes the binary rule and populates the rules for dead to alive and alive to dead transformations.
+     * Enables or disables tracking the number of living neighbours and the age of every cell as the
+     * generations are computed, for the colour modes of the view.
+     *
+     * @param tracking Whether to track neighbour counts and ages.
      */
-    private void processRule() {
-        for (int i = 0; i < 9; i++) {
-            if (binaryRule.charAt(i) == '1') {
-                deadToAliveRule.add(i);
-            }
-        }
+    public void setTracking(boolean tracking) {
+        this.tracking = tracking;
+        cells.setTracking(tracking);
+    }
 
-        for (int i = 9; i < 18; i++) {
-            if (binaryRule.charAt(i) == '1') {
-                aliveToDeadRule.add(i - 9);
-            }
-        }
+    /**
+     * Sets what lies beyond the edges of the grid: dead cells, the cells of the opposite edge or a mirror of
+     * the edge. The HashLife and sparse engines evolve patterns on an unbounded plane, so they step on the grid
+     * instead while the edges wrap around or mirror.
+     *
+     * @param boundary The boundary to apply from the next generation on.
+     */
+    public void setBoundary(Boundary boundary) {
+        cells.setBoundary(boundary);
+        engine.invalidate();
     }
 
     /**
-     * Makes a deep copy of the provided 2D JButton array.
+     * Gets what lies beyond the edges of the grid.
      *
-     * @param original The original grid to be copied.
-     * @return A new copy of the provided grid.
+     * @return The boundary.
      */
-    public JButton[][] makeCopy(JButton[][] original) {
-        int rows = original.length;
-        int cols = original[0].length;
-        JButton[][] copy = new JButton[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                JButton button = new JButton();
-                button.setBackground(Color.WHITE);
-                copy[i][j] = button;
-                copy[i][j].setBackground(original[i][j].getBackground());
-            }
+    public Boundary getBoundary() {
+        return cells.getBoundary();
+    }
+
+    /**
+     * Sets the engine used to advance the cells, such as {@link LifeEngine#PACKED}, its row-at-a-time
+     * variant {@link LifeEngine#WIDE} or a HashLife engine.
+     *
+     * @param engine The engine to use from the next generation on.
+     */
+    public void setEngine(LifeEngine engine) {
+        this.engine = engine;
+        engine.invalidate();
+    }
+
+    /**
+     * Gets the engine used to advance the cells.
+     *
+     * @return The current engine.
+     */
+    public LifeEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Sets how many threads compute each generation. The grid is split into bands of rows that are
+     * stepped on a fork-join pool, each band writing its own rows of a second buffer.
+     *
+     * @param parallelism The number of threads, or 1 to step on the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        if (pool != null) {
+            pool.shutdown();
         }
-        return copy;
+        pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+        cells.setPool(pool);
+    }
+
+    /**
+     * Gets how many threads compute each generation.
+     *
+     * @return The number of threads.
+     */
+    public int getParallelism() {
+        return (pool == null) ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Gets the packed cell store holding the current generation.
+     *
+     * @return The packed cells.
+     */
+    public BitGrid getCells() {
+        return cells;
     }
 
     /**
      * Applies the game rules to the current grid and returns the next state of the grid.
+     * Depending on the engine, this may advance more than one generation.
      *
-     * @return The grid after applying the transformation rules.
-     */
-    public JButton[][] applyRule() {
-        processRule();
-        JButton[][] next = makeCopy(grid);
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                int aliveNeighbours = checkNeighbours(i, j);
-                if (!grid[i][j].getBackground().equals(Color.WHITE)) {
-                    if (!aliveToDeadRule.contains(aliveNeighbours)) {
-                        next[i][j].setBackground(Color.WHITE);
-                    }
-                } else {
-                    if (deadToAliveRule.contains(aliveNeighbours)) {
-                        next[i][j].setBackground(selectedColor);
-                    }
-                }
-            }
-        }
-        setGrid(next);
-        return next;
+     * @return The cells after applying the transformation rules.
+     */
+    public BitGrid applyRule() {
+        lastAdvance = engine.advance(cells, rule);
+        return cells;
     }
 
     /**
-     * Applies the selected color to all non-white buttons in the grid.
+     * Gets the number of generations the last call to {@link #applyRule()} advanced.
+     *
+     * @return The number of generations.
      */
-    public void applyColour() {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                if (!grid[i][j].getBackground().equals(Color.WHITE)) {
-                    grid[i][j].setBackground(selectedColor);
-                }
-            }
+    public long getLastAdvance() {
+        return lastAdvance;
+    }
+
+    /**
+     * Records the current generation in the history.
+     *
+     * @param generation The number of the generation the cells hold.
+     */
+    public void recordHistory(long generation) {
+        history.record(generation, cells);
+    }
+
+    /**
+     * Rewinds the cells to the newest recorded generation that is not after the given one. Generations after
+     * it stay recorded, so the grid can be moved forward again until it is edited or evolves differently.
+     *
+     * @param generation The generation to go to.
+     * @return The generation the cells now hold, or -1 if no generation that old is recorded.
+     */
+    public long rewind(long generation) {
+        long restored = history.restore(generation, cells);
+        if (restored >= 0) {
+            engine.invalidate();
         }
+        return restored;
     }
 
     /**
-     * Counts the number of non-white neighbors around a given cell in the grid.
+     * Gets the history of the recent generations.
      *
-     * @param row The row of the cell to check.
-     * @param col The column of the cell to check.
-     * @return The count of non-white neighboring cells.
+     * @return The history.
      */
-    public int checkNeighbours(int row, int col) {
-        int aliveNeighbours = 0;
-
-        for (int i = Math.max(0, row - 1); i <= Math.min(row + 1, rows - 1); i++) {
-            for (int j = Math.max(0, col - 1); j <= Math.min(col + 1, cols - 1); j++) {
-                if ((i == row) && (j == col)) {
-                    // continue
-                } else {
-                    if (!grid[i][j].getBackground().equals(Color.WHITE)) {
-                        aliveNeighbours++;
-                    }
-                }
+    public History getHistory() {
+        return history;
+    }
+
+    /**
+     * Checks whether a cell is alive.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return {@code true} if the cell is alive.
+     */
+    public boolean isAlive(int row, int col) {
+        return cells.get(row, col);
+    }
+
+    /**
+     * Sets a cell to alive or dead. The edited grid no longer comes from the random soup it was filled with,
+     * so the soup is forgotten.
+     *
+     * @param row   The row of the cell.
+     * @param col   The column of the cell.
+     * @param alive Whether the cell should be alive.
+     */
+    public void setAlive(int row, int col, boolean alive) {
+        cells.set(row, col, alive);
+        engine.invalidate();
+        soup = null;
+    }
+
+    /**
+     * Kills every cell in the grid.
+     */
+    public void clear() {
+        cells.clear();
+        engine.invalidate();
+        soup = null;
+    }
+
+    /**
+     * Replaces every cell with a random soup. The soup is recorded in the snapshots and patterns saved
+     * afterwards, so the starting generation can be regenerated exactly.
+     *
+     * @param soup The soup to fill the cells with.
+     */
+    public void fillSoup(Soup soup) {
+        soup.fill(cells);
+        engine.invalidate();
+        this.soup = soup;
+    }
+
+    /**
+     * Gets the random soup the cells were last filled with.
+     *
+     * @return The soup, or {@code null} if the cells were cleared, edited or loaded since.
+     */
+    public Soup getSoup() {
+        return soup;
+    }
+
+    /**
+     * Replaces the cells with a pattern file, streamed straight into the cell store. The format is chosen
+     * from the extension of the file; a rule declared by the pattern replaces the current rule.
+     *
+     * @param path     The pattern file.
+     * @param progress Receives the number of bytes read so far, or {@code null}.
+     * @throws IOException              If the file cannot be read or is not a valid pattern.
+     * @throws IllegalArgumentException If the extension belongs to no pattern format.
+     */
+    public void importPattern(Path path, LongConsumer progress) throws IOException {
+        PatternFormat format = PatternFormat.forPath(path);
+        clear();
+        try (InputStream in = Files.newInputStream(path)) {
+            PatternReader reader = new PatternReader(in, progress);
+            reader.read(format, GridSink.placing(cells, format));
+            if (reader.getRule() != null) {
+                rule = reader.getRule();
             }
+        } finally {
+            // a pattern that failed half way still left cells behind
+            engine.invalidate();
         }
-        return aliveNeighbours;
     }
 
     /**
-     * Gets the current game grid.
+     * Replaces the cells, rule and generation with a binary snapshot of the same size. The cells are left as
+     * they were if the snapshot cannot be read or fails its checksum.
      *
-     * @return A 2D array of {@code JButton} representing the current game grid.
+     * @param path The snapshot file.
+     * @return The generation of the snapshot.
+     * @throws IOException              If the file cannot be read or is not a valid snapshot.
+     * @throws IllegalArgumentException If the snapshot is not the size of the grid.
      */
-    public JButton[][] getGrid() {
-        return grid;
+    public long loadSnapshot(Path path) throws IOException {
+        SnapshotFile snapshot = SnapshotFile.open(path);
+        snapshot.readInto(cells);
+        engine.invalidate();
+        rule = snapshot.getRule();
+        soup = snapshot.getSoup();
+        return snapshot.getGeneration();
     }
 
     /**
-     * Sets the selected color for alive cells and applies it to the current grid.
+     * Saves the cells and rule to a binary snapshot, along with the random soup they started from.
      *
-     * @param selectedColor The {@code Color} to be applied to alive cells.
+     * @param path       The snapshot file.
+     * @param generation The number of the current generation.
+     * @throws IOException If the file cannot be written.
      */
-    public void setSelectedColor(Color selectedColor) {
-        this.selectedColor = selectedColor;
-        applyColour();
+    public void saveSnapshot(Path path, long generation) throws IOException {
+        SnapshotFile.write(path, cells, rule, generation, soup);
+    }
+
+    /**
+     * Saves the cells to a pattern file in the format chosen from the extension of the file. The random soup
+     * they started from is noted in a comment.
+     *
+     * @param path The pattern file.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If the extension belongs to no pattern format.
+     */
+    public void exportPattern(Path path) throws IOException {
+        PatternFormat format = PatternFormat.forPath(path);
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            PatternWriter writer = new PatternWriter(out, format);
+            if (soup != null) {
+                writer.comment("Soup: " + soup);
+            }
+            writer.write(cells, rule);
+        }
+    }
+
+    /**
+     * Counts the number of alive neighbors around a given cell in the grid, beyond the edges as the boundary
+     * has them.
+     *
+     * @param row The row of the cell to check.
+     * @param col The column of the cell to check.
+     * @return The count of alive neighboring cells.
+     */
+    public int checkNeighbours(int row, int col) {
+        return cells.countNeighbours(row, col);
     }
 }
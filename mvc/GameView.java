@@ -1,16 +1,22 @@
 package mvc;
 
+import engine.BitGrid;
 import main.Languages;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.awt.GridLayout;
+import java.awt.GridBagLayout;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.swing.AbstractButton;
+import javax.swing.BorderFactory;
+import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -18,6 +24,9 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JSlider;
 import javax.swing.JTextField;
 import javax.swing.UIManager;
 
@@ -27,9 +36,9 @@ import javax.swing.UIManager;
 public class GameView {
 
     /**
-     * Array of buttons representing the grid on the UI.
+     * Canvas painting the grid of cells on the UI.
      */
-    private JButton[][] grid;
+    private GridCanvas canvas;
 
     /**
      * Button to confirm an action or input.
@@ -54,12 +63,12 @@ public class GameView {
     /**
      * The number of rows in the grid.
      */
-    private final int rows = 50;
+    private final int rows;
 
     /**
      * The number of columns in the grid.
      */
-    private final int cols = 50;
+    private final int cols;
 
     /**
      * Button to initiate the start of a process or operation.
@@ -71,11 +80,31 @@ public class GameView {
      */
     private JButton stop;
 
+    /**
+     * Button to go back one generation in the history.
+     */
+    private JButton back;
+
+    /**
+     * Text field for entering the generation to go to.
+     */
+    private JTextField goTo;
+
+    /**
+     * Button to go to the generation entered in the history.
+     */
+    private JButton go;
+
     /**
      * Text field for entering the number of steps or iterations.
      */
     private JTextField steps;
 
+    /**
+     * Slider choosing how many generations run per second, the rightmost position running as fast as possible.
+     */
+    private JSlider speed;
+
     /**
      * Label to display execution status or information.
      */
@@ -86,6 +115,16 @@ public class GameView {
      */
     private JButton rand;
 
+    /**
+     * Text field showing the seed of the last random soup, or entering the seed of a soup to regenerate.
+     */
+    private JTextField seed;
+
+    /**
+     * Text field for entering the percentage of living cells in random soups.
+     */
+    private JTextField density;
+
     /**
      * Button to switch to manual configuration or input.
      */
@@ -96,6 +135,11 @@ public class GameView {
      */
     private JCheckBox multiColour;
 
+    /**
+     * Checkbox to enable or disable colouring cells by their age.
+     */
+    private JCheckBox ageColour;
+
     /**
      * Button to open a color picker or apply a color.
      */
@@ -116,6 +160,51 @@ public class GameView {
      */
     private JMenuItem exit;
 
+    /**
+     * Menu item to load a pattern file into the grid.
+     */
+    private JMenuItem importPattern;
+
+    /**
+     * Menu item to save the grid to a pattern file.
+     */
+    private JMenuItem exportPattern;
+
+    /**
+     * Menu item to let patterns evolve on an unbounded plane instead of dying at the edge of the grid.
+     */
+    private JCheckBoxMenuItem unbounded;
+
+    /**
+     * Menu item to step the grid with the wide kernel, evaluating whole rows at a time.
+     */
+    private JCheckBoxMenuItem wide;
+
+    /**
+     * Menu item to keep the cells beyond the edges of the grid dead.
+     */
+    private JRadioButtonMenuItem deadEdges;
+
+    /**
+     * Menu item to wrap the edges of the grid around, as a torus.
+     */
+    private JRadioButtonMenuItem torus;
+
+    /**
+     * Menu item to mirror the cells along the edges of the grid beyond them.
+     */
+    private JRadioButtonMenuItem mirror;
+
+    /**
+     * Menu item to show the performance of the simulation over the grid.
+     */
+    private JCheckBoxMenuItem overlay;
+
+    /**
+     * Menu item to open the rule explorer.
+     */
+    private JMenuItem explorer;
+
     /**
      * Main frame of the game application.
      */
@@ -144,7 +233,17 @@ public class GameView {
     /**
      * Current language selection for the UI.
      */
-    private String language;
+    private String language = "en";
+
+    /**
+     * The text of every menu, menu item, button and checkbox, relabelled when the language changes.
+     */
+    private final Map<AbstractButton, Languages> buttonTexts = new LinkedHashMap<>();
+
+    /**
+     * The text of every label, relabelled when the language changes.
+     */
+    private final Map<JLabel, Languages> labelTexts = new LinkedHashMap<>();
 
     /**
      * Panel containing game-related controls and information.
@@ -152,14 +251,26 @@ public class GameView {
     private JPanel gamePanel;
 
     /**
-     * Panel that holds the grid of buttons.
+     * Panel that holds the grid canvas.
      */
     private JPanel gridPanel;
 
     /**
-     * Constructs the GameView
+     * Constructs the GameView with the default 50x50 grid
      */
     public GameView() {
+        this(50, 50);
+    }
+
+    /**
+     * Constructs the GameView
+     *
+     * @param rows - Number of rows in the grid
+     * @param cols - Number of columns in the grid
+     */
+    public GameView(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
         // set look and feel to work on macOS
         try {
             UIManager.setLookAndFeel(UIManager.getCrossPlatformLookAndFeelClassName());
@@ -183,18 +294,13 @@ public class GameView {
         gamePanel = new JPanel();
         gamePanel.setLayout(new BorderLayout());
 
-        // Grid panel creation:
+        // Grid panel creation, cells shrink to fit large grids down to a single pixel:
         gridPanel = new JPanel();
-        gridPanel.setLayout(new GridLayout(rows, cols));
-        grid = new JButton[rows][cols];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                JButton button = new JButton();
-                button.setBackground(Color.WHITE);
-                grid[i][j] = button;
-                gridPanel.add(grid[i][j]);
-            }
-        }
+        gridPanel.setLayout(new GridBagLayout());
+        canvas = new GridCanvas(rows, cols, Math.max(1, 550 / Math.max(rows, cols)));
+        gridPanel.add(canvas);
+        JScrollPane gridScroll = new JScrollPane(gridPanel);
+        gridScroll.setBorder(BorderFactory.createEmptyBorder());
 
         // Footer panel creation:
         JPanel footer = new JPanel();
@@ -202,23 +308,51 @@ public class GameView {
         footer.setLayout(new FlowLayout());
 
         // Menu creation:
+        this.language = language;
+        buttonTexts.clear();
+        labelTexts.clear();
         JMenuBar mb = new JMenuBar();
         gameFrame.setJMenuBar(mb);
-        JMenu gameMenu = new JMenu(Languages.GAME.get(language));
-        newGame = new JMenuItem(Languages.NEW.get(language));
-        solution = new JMenuItem(Languages.SOLUTION.get(language));
-        exit = new JMenuItem(Languages.EXIT.get(language));
+        JMenu gameMenu = text(new JMenu(), Languages.GAME);
+        newGame = text(new JMenuItem(), Languages.NEW);
+        solution = text(new JMenuItem(), Languages.SOLUTION);
+        exit = text(new JMenuItem(), Languages.EXIT);
+        unbounded = text(new JCheckBoxMenuItem(), Languages.UNBOUNDED);
+        wide = text(new JCheckBoxMenuItem(), Languages.WIDE);
+        JMenu edges = text(new JMenu(), Languages.EDGES);
+        deadEdges = text(new JRadioButtonMenuItem(), Languages.DEAD_EDGES);
+        deadEdges.setSelected(true);
+        torus = text(new JRadioButtonMenuItem(), Languages.TORUS);
+        mirror = text(new JRadioButtonMenuItem(), Languages.MIRROR);
+        ButtonGroup edgeGroup = new ButtonGroup();
+        edgeGroup.add(deadEdges);
+        edgeGroup.add(torus);
+        edgeGroup.add(mirror);
+        edges.add(deadEdges);
+        edges.add(torus);
+        edges.add(mirror);
+        overlay = text(new JCheckBoxMenuItem(), Languages.OVERLAY);
+        explorer = text(new JMenuItem(), Languages.EXPLORER);
+        importPattern = text(new JMenuItem(), Languages.IMPORT);
+        exportPattern = text(new JMenuItem(), Languages.EXPORT);
         gameMenu.add(newGame);
+        gameMenu.add(importPattern);
+        gameMenu.add(exportPattern);
         gameMenu.add(solution);
+        gameMenu.add(unbounded);
+        gameMenu.add(wide);
+        gameMenu.add(edges);
+        gameMenu.add(overlay);
+        gameMenu.add(explorer);
         gameMenu.add(exit);
-        JMenu lang = new JMenu(Languages.LANGUAGE.get(language));
-        eng = new JMenuItem(Languages.ENGLISH.get(language));
-        fr = new JMenuItem(Languages.FRENCH.get(language));
+        JMenu lang = text(new JMenu(), Languages.LANGUAGE);
+        eng = text(new JMenuItem(), Languages.ENGLISH);
+        fr = text(new JMenuItem(), Languages.FRENCH);
         lang.add(eng);
         lang.add(fr);
-        JMenu helpMenu = new JMenu(Languages.HELP.get(language));
-        colours = new JMenuItem(Languages.COLOURS.get(language));
-        about = new JMenuItem(Languages.ABOUT.get(language));
+        JMenu helpMenu = text(new JMenu(), Languages.HELP);
+        colours = text(new JMenuItem(), Languages.COLOURS);
+        about = text(new JMenuItem(), Languages.ABOUT);
         helpMenu.add(colours);
         helpMenu.add(about);
         mb.add(gameMenu);
@@ -228,36 +362,58 @@ public class GameView {
         // Component creation:
         ImageIcon img = new ImageIcon(cl.getResource("resources/gl.png"));
         JLabel imgLabel = new JLabel(img);
-        rand = new JButton(Languages.RANDOM.get(language));
-        manual = new JButton(Languages.MANUAL.get(language));
-        JLabel modelLbl = new JLabel(Languages.MODEL.get(language));
+        rand = text(new JButton(), Languages.RANDOM);
+        JLabel seedLbl = text(new JLabel(), Languages.SEED);
+        seed = new JTextField(12);
+        JLabel densityLbl = text(new JLabel(), Languages.DENSITY);
+        density = new JTextField(3);
+        density.setText("25");
+        manual = text(new JButton(), Languages.MANUAL);
+        JLabel modelLbl = text(new JLabel(), Languages.MODEL);
         model = new JTextField(14);
         model.setText("000100000001100000");
-        multiColour = new JCheckBox(Languages.MULTICOLOUR.get(language));
-        colour = new JButton(Languages.COLOUR.get(language));
-        start = new JButton(Languages.START.get(language));
-        JLabel stepsLbl = new JLabel(Languages.STEPS.get(language));
+        multiColour = text(new JCheckBox(), Languages.MULTICOLOUR);
+        ageColour = text(new JCheckBox(), Languages.AGE_COLOUR);
+        colour = text(new JButton(), Languages.COLOUR);
+        start = text(new JButton(), Languages.START);
+        JLabel stepsLbl = text(new JLabel(), Languages.STEPS);
         steps = new JTextField(5);
         steps.setText("100");
+        JLabel speedLbl = text(new JLabel(), Languages.SPEED);
+        speed = new JSlider(0, 10, 3);
+        speed.setPreferredSize(new Dimension(100, speed.getPreferredSize().height));
         exec = new JLabel(Languages.EXEC.get(language) + " 0");
-        stop = new JButton(Languages.STOP.get(language));
+        stop = text(new JButton(), Languages.STOP);
+        back = text(new JButton(), Languages.BACK);
+        goTo = new JTextField(5);
+        go = text(new JButton(), Languages.GO_TO);
 
         // Add components to the footer:
         footer.add(rand);
+        footer.add(seedLbl);
+        footer.add(seed);
+        footer.add(densityLbl);
+        footer.add(density);
         footer.add(manual);
         footer.add(modelLbl);
         footer.add(model);
         footer.add(multiColour);
+        footer.add(ageColour);
         footer.add(colour);
         footer.add(start);
         footer.add(stepsLbl);
         footer.add(steps);
+        footer.add(speedLbl);
+        footer.add(speed);
         footer.add(exec);
         footer.add(stop);
+        footer.add(back);
+        footer.add(goTo);
+        footer.add(go);
 
         // Add components to main panel:
         gamePanel.add(imgLabel, BorderLayout.NORTH);
-        gamePanel.add(gridPanel, BorderLayout.CENTER);
+        gamePanel.add(gridScroll, BorderLayout.CENTER);
         gamePanel.add(footer, BorderLayout.SOUTH);
 
         // Add panel to frame:
@@ -266,17 +422,36 @@ public class GameView {
     }
 
     /**
-     * Updates the grid of cells
+     * Labels a menu, menu item, button or checkbox in the current language, and again whenever it changes
+     * @param button - the component to label
+     * @param text   - its text
+     * @param <T>    - the type of the component
+     * @return - the component
      */
-    public void updateGrid() {
-        gridPanel.removeAll();
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                gridPanel.add(grid[i][j]);
-            }
-        }
-        gamePanel.revalidate();
-        gamePanel.repaint();
+    private <T extends AbstractButton> T text(T button, Languages text) {
+        buttonTexts.put(button, text);
+        button.setText(text.get(language));
+        return button;
+    }
+
+    /**
+     * Labels a label in the current language, and again whenever it changes
+     * @param label - the label
+     * @param text  - its text
+     * @return - the label
+     */
+    private JLabel text(JLabel label, Languages text) {
+        labelTexts.put(label, text);
+        label.setText(text.get(language));
+        return label;
+    }
+
+    /**
+     * Updates the grid of cells, repainting only the cells that changed
+     * @param cells - cells to show
+     */
+    public void updateGrid(BitGrid cells) {
+        canvas.render(cells);
     }
 
     /**
@@ -325,12 +500,12 @@ public class GameView {
     }
 
     /**
-     * Retrieves the grid of buttons.
+     * Retrieves the canvas painting the grid.
      *
-     * @return a 2D array of buttons
+     * @return the grid canvas
      */
-    public JButton[][] getGrid() {
-        return grid;
+    public GridCanvas getCanvas() {
+        return canvas;
     }
 
     /**
@@ -379,12 +554,48 @@ public class GameView {
     }
 
     /**
-     * Sets the grid of buttons.
+     * Retrieves the "Step back" button.
+     *
+     * @return the step back button
+     */
+    public JButton getBack() {
+        return back;
+    }
+
+    /**
+     * Retrieves the field holding the generation to go to.
+     *
+     * @return the generation text field
+     */
+    public JTextField getGoTo() {
+        return goTo;
+    }
+
+    /**
+     * Retrieves the seed input field.
      *
-     * @param grid the 2D array of buttons to set
+     * @return the seed text field
      */
-    public void setGrid(JButton[][] grid) {
-        this.grid = grid;
+    public JTextField getSeed() {
+        return seed;
+    }
+
+    /**
+     * Retrieves the density input field.
+     *
+     * @return the density text field, in percent
+     */
+    public JTextField getDensity() {
+        return density;
+    }
+
+    /**
+     * Retrieves the "Go to" button.
+     *
+     * @return the go to button
+     */
+    public JButton getGo() {
+        return go;
     }
 
     /**
@@ -396,6 +607,15 @@ public class GameView {
         return steps;
     }
 
+    /**
+     * Retrieves the speed slider.
+     *
+     * @return the speed slider
+     */
+    public JSlider getSpeed() {
+        return speed;
+    }
+
     /**
      * Retrieves the label for execution status.
      *
@@ -432,6 +652,15 @@ public class GameView {
         return multiColour;
     }
 
+    /**
+     * Retrieves the colour by age checkbox.
+     *
+     * @return the age colour checkbox
+     */
+    public JCheckBox getAgeColour() {
+        return ageColour;
+    }
+
     /**
      * Retrieves the "Color" button.
      *
@@ -468,6 +697,87 @@ public class GameView {
         return exit;
     }
 
+    /**
+     * Retrieves the menu item for the unbounded universe.
+     *
+     * @return the unbounded menu item
+     */
+    public JCheckBoxMenuItem getUnbounded() {
+        return unbounded;
+    }
+
+    /**
+     * Retrieves the menu item for the wide kernel.
+     *
+     * @return the wide kernel menu item
+     */
+    public JCheckBoxMenuItem getWide() {
+        return wide;
+    }
+
+    /**
+     * Retrieves the menu item keeping the cells beyond the edges dead.
+     *
+     * @return the dead edges menu item
+     */
+    public JRadioButtonMenuItem getDeadEdges() {
+        return deadEdges;
+    }
+
+    /**
+     * Retrieves the menu item wrapping the edges around.
+     *
+     * @return the torus menu item
+     */
+    public JRadioButtonMenuItem getTorus() {
+        return torus;
+    }
+
+    /**
+     * Retrieves the menu item mirroring the edges.
+     *
+     * @return the mirror menu item
+     */
+    public JRadioButtonMenuItem getMirror() {
+        return mirror;
+    }
+
+    /**
+     * Retrieves the menu item for the performance overlay.
+     *
+     * @return the overlay menu item
+     */
+    public JCheckBoxMenuItem getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Retrieves the menu item opening the rule explorer.
+     *
+     * @return the rule explorer menu item
+     */
+    public JMenuItem getExplorer() {
+        return explorer;
+    }
+
+    /**
+     * Retrieves the menu item importing a pattern.
+     *
+     * @return the import menu item
+     */
+    public JMenuItem getImportPattern() {
+        return importPattern;
+    }
+
+    /**
+     * Retrieves the menu item exporting a pattern.
+     *
+     * @return the export menu item
+     */
+    public JMenuItem getExportPattern() {
+        return exportPattern;
+    }
+
     /**
      * Retrieves the main game frame.
      *
@@ -523,12 +833,20 @@ public class GameView {
     }
 
     /**
-     * Sets the current language for the UI.
+     * Sets the current language for the UI, relabelling the menus and footer of the window in place. The
+     * status label shows what the controller last put in it and is relabelled by the controller.
      *
      * @param language the language to set
      */
     public void setLanguage(String language) {
         this.language = language;
+        buttonTexts.forEach((button, text) -> button.setText(text.get(language)));
+        labelTexts.forEach((label, text) -> label.setText(text.get(language)));
+        if (gameFrame != null) {
+            // the footer wraps its components again to fit their new widths
+            gameFrame.getRootPane().revalidate();
+            gameFrame.repaint();
+        }
     }
 
 }
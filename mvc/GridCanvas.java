@@ -0,0 +1,455 @@
+package mvc;
+
+import engine.BitGrid;
+import engine.Boundary;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+
+/**
+ * Single component that paints the cells of the grid. Cells are drawn into a cached image, and only the
+ * words of cells the grid reports as changed since the last frame are repainted, so the cost of a frame
+ * depends on the number of changed cells rather than on the size of the grid.
+ * <p>
+ * Every cell is reduced to a shade, looked up in a palette built once. In multicolour and age modes the
+ * shades come from the neighbour counts and ages the grid tracks while stepping, so colouring cells costs
+ * a table lookup per cell.
+ */
+public final class GridCanvas extends JComponent {
+
+    /**
+     * Swing components are serializable and require serialVersionUID
+     */
+    private static final long serialVersionUID = -3187562214690521875L;
+
+    /**
+     * Colour of the lines between the cells.
+     */
+    private static final Color LINE_COLOUR = new Color(0xB8CFE5);
+
+    /**
+     * Colours of living cells in multicolour mode, indexed by the number of living neighbours.
+     */
+    private static final Color[] NEIGHBOUR_COLOURS = {
+            Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW, Color.MAGENTA, Color.CYAN,
+            Color.decode("#5aa1d6"), Color.decode("#e69873"), Color.decode("#8e7cc3")
+    };
+
+    /**
+     * Font of the overlay.
+     */
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+    /**
+     * Background of the overlay, translucent so the cells under it stay visible.
+     */
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 160);
+
+    /**
+     * Number of shades of the age heatmap. Ages are bucketed by powers of two, the last bucket holding every
+     * cell older than {@code 2^(AGE_LEVELS - 2)} generations.
+     */
+    private static final int AGE_LEVELS = 16;
+
+    /**
+     * Colour of newborn cells in the age heatmap.
+     */
+    private static final Color YOUNG = new Color(0xFFF3B0);
+
+    /**
+     * Colour of the oldest cells in the age heatmap.
+     */
+    private static final Color OLD = new Color(0x3B0F70);
+
+    /**
+     * Shade of a dead cell.
+     */
+    private static final byte DEAD = 0;
+
+    /**
+     * Shade of a living cell painted with the base colour. Multicolour shades follow, one per neighbour count.
+     */
+    private static final byte ALIVE = 1;
+
+    /**
+     * First shade of the age heatmap, after the multicolour shades.
+     */
+    private static final byte AGED = (byte) (ALIVE + 1 + NEIGHBOUR_COLOURS.length);
+
+    /**
+     * Marker for a cell whose painted colour is out of date.
+     */
+    private static final byte UNPAINTED = -1;
+
+    /**
+     * The number of rows in the grid.
+     */
+    private final int rows;
+
+    /**
+     * The number of columns in the grid.
+     */
+    private final int cols;
+
+    /**
+     * The size of a cell in pixels, including the line around it.
+     */
+    private final int cellSize;
+
+    /**
+     * Image holding the last painted frame.
+     */
+    private final transient BufferedImage image;
+
+    /**
+     * The shade painted for every cell in the last frame.
+     */
+    private final byte[] paintedShades;
+
+    /**
+     * One bit per word, set for the words around the changed words whose neighbour counts may have changed.
+     */
+    private long[] neighbourhood;
+
+    /**
+     * The colour of every shade; the colour of living cells outside the colour modes is at {@link #ALIVE}.
+     */
+    private final Color[] palette = new Color[AGED + AGE_LEVELS];
+
+    /**
+     * A flag indicating whether living cells are coloured by their number of living neighbours.
+     */
+    private boolean multicolour = false;
+
+    /**
+     * A flag indicating whether living cells are coloured by their age.
+     */
+    private boolean ageColour = false;
+
+    /**
+     * Text drawn over the top left corner of the visible cells, or {@code null}.
+     */
+    private String overlay;
+
+    /**
+     * A flag indicating whether every cell has to be checked on the next frame.
+     */
+    private boolean invalid = true;
+
+    /**
+     * The row of cells painted since the last repaint request, or -1.
+     */
+    private int pendingRow = -1;
+
+    /**
+     * The first column painted in the pending row.
+     */
+    private int pendingMinCol;
+
+    /**
+     * The last column painted in the pending row.
+     */
+    private int pendingMaxCol;
+
+    /**
+     * Constructs a canvas for a grid of the given size.
+     *
+     * @param rows     The number of rows.
+     * @param cols     The number of columns.
+     * @param cellSize The size of a cell in pixels.
+     */
+    public GridCanvas(int rows, int cols, int cellSize) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cellSize = cellSize;
+        this.paintedShades = new byte[rows * cols];
+        this.image = new BufferedImage(cols * cellSize, rows * cellSize, BufferedImage.TYPE_INT_RGB);
+        palette[DEAD] = Color.WHITE;
+        palette[ALIVE] = Color.BLACK;
+        System.arraycopy(NEIGHBOUR_COLOURS, 0, palette, ALIVE + 1, NEIGHBOUR_COLOURS.length);
+        for (int level = 0; level < AGE_LEVELS; level++) {
+            float t = level / (float) (AGE_LEVELS - 1);
+            palette[AGED + level] = new Color(
+                    Math.round(YOUNG.getRed() + t * (OLD.getRed() - YOUNG.getRed())),
+                    Math.round(YOUNG.getGreen() + t * (OLD.getGreen() - YOUNG.getGreen())),
+                    Math.round(YOUNG.getBlue() + t * (OLD.getBlue() - YOUNG.getBlue())));
+        }
+        Graphics2D g = image.createGraphics();
+        g.setColor(LINE_COLOUR);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                paintCell(g, i, j, Color.WHITE);
+            }
+        }
+        g.dispose();
+        setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+        setOpaque(true);
+    }
+
+    /**
+     * Paints the cells that changed since the last frame into the cached image and schedules a repaint
+     * of the rows they are in.
+     *
+     * @param cells The cells to paint.
+     */
+    public void render(BitGrid cells) {
+        long[] dirty = cells.takeDirtyWords();
+        Graphics2D g = image.createGraphics();
+        // every living cell ages, and without tracked counts every neighbour count has to be recomputed
+        if (invalid || ageColour || dirty == null || (multicolour && cells.getNeighbourCounts() == null)) {
+            for (int index = 0; index < cells.getWords().length; index++) {
+                paintWord(g, cells, index);
+            }
+        } else {
+            if (multicolour) {
+                dirty = neighbourhood(dirty, cells.getWordsPerRow(), cells.getBoundary() == Boundary.TORUS);
+            }
+            for (int i = 0; i < dirty.length; i++) {
+                for (long bits = dirty[i]; bits != 0; bits &= bits - 1) {
+                    paintWord(g, cells, (i << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+        flushRow();
+        g.dispose();
+        invalid = false;
+    }
+
+    /**
+     * Widens a set of changed words to the words around them, whose cells may have gained or lost neighbours.
+     * On a torus the words along an edge are next to those along the opposite edge.
+     *
+     * @param dirty       One bit per changed word.
+     * @param wordsPerRow The number of words per row.
+     * @param wrap        Whether the edges of the grid wrap around.
+     * @return One bit per word next to or at a changed word, valid until the next call.
+     */
+    private long[] neighbourhood(long[] dirty, int wordsPerRow, boolean wrap) {
+        if (neighbourhood == null || neighbourhood.length != dirty.length) {
+            neighbourhood = new long[dirty.length];
+        }
+        Arrays.fill(neighbourhood, 0L);
+        for (int i = 0; i < dirty.length; i++) {
+            for (long bits = dirty[i]; bits != 0; bits &= bits - 1) {
+                int index = (i << 6) + Long.numberOfTrailingZeros(bits);
+                int r = index / wordsPerRow;
+                int w = index % wordsPerRow;
+                for (int dr = r - 1; dr <= r + 1; dr++) {
+                    if (!wrap && (dr < 0 || dr >= rows)) {
+                        continue;
+                    }
+                    for (int dw = w - 1; dw <= w + 1; dw++) {
+                        if (!wrap && (dw < 0 || dw >= wordsPerRow)) {
+                            continue;
+                        }
+                        int around = Math.floorMod(dr, rows) * wordsPerRow + Math.floorMod(dw, wordsPerRow);
+                        neighbourhood[around >>> 6] |= 1L << around;
+                    }
+                }
+            }
+        }
+        return neighbourhood;
+    }
+
+    /**
+     * Paints the cells of one word whose shade changed since they were last painted.
+     *
+     * @param g     The graphics of the cached image.
+     * @param cells The cells to paint.
+     * @param index The index of the word.
+     */
+    private void paintWord(Graphics2D g, BitGrid cells, int index) {
+        int i = index / cells.getWordsPerRow();
+        int w = index % cells.getWordsPerRow();
+        long word = cells.getWords()[index];
+        byte[] neighbours = cells.getNeighbourCounts();
+        int end = Math.min(cols, (w + 1) * 64);
+        for (int j = w * 64; j < end; j++) {
+            byte shade = DEAD;
+            if ((word & (1L << j)) != 0) {
+                if (ageColour) {
+                    int age = cells.getAge(i, j);
+                    shade = (byte) (AGED + Math.min(AGE_LEVELS - 1, 32 - Integer.numberOfLeadingZeros(age)));
+                } else if (multicolour) {
+                    // the grid only counts neighbours once the model starts tracking them
+                    int count = (neighbours != null) ? neighbours[i * cols + j] : cells.countNeighbours(i, j);
+                    shade = (byte) (ALIVE + 1 + count);
+                } else {
+                    shade = ALIVE;
+                }
+            }
+            if (shade != paintedShades[i * cols + j]) {
+                paintedShades[i * cols + j] = shade;
+                paintCell(g, i, j, colourOf(shade));
+                if (i != pendingRow) {
+                    flushRow();
+                    pendingRow = i;
+                    pendingMinCol = j;
+                }
+                pendingMaxCol = j;
+            }
+        }
+    }
+
+    /**
+     * Requests a repaint of the cells painted in the pending row.
+     */
+    private void flushRow() {
+        if (pendingRow >= 0) {
+            repaint(pendingMinCol * cellSize, pendingRow * cellSize,
+                    (pendingMaxCol - pendingMinCol + 1) * cellSize, cellSize);
+            pendingRow = -1;
+        }
+    }
+
+    /**
+     * Fills a single cell of the cached image.
+     *
+     * @param g      The graphics of the cached image.
+     * @param row    The row of the cell.
+     * @param col    The column of the cell.
+     * @param colour The colour of the cell.
+     */
+    private void paintCell(Graphics2D g, int row, int col, Color colour) {
+        g.setColor(colour);
+        int inset = (cellSize > 3) ? 1 : 0;
+        g.fillRect(col * cellSize + inset, row * cellSize + inset, cellSize - inset, cellSize - inset);
+    }
+
+    /**
+     * Converts a shade into the colour it is painted with.
+     *
+     * @param shade The shade of a cell.
+     * @return The colour of the cell.
+     */
+    private Color colourOf(byte shade) {
+        return palette[shade];
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.drawImage(image, 0, 0, null);
+        if (overlay != null) {
+            Rectangle bounds = overlayBounds();
+            FontMetrics metrics = getFontMetrics(OVERLAY_FONT);
+            g.setColor(OVERLAY_BACKGROUND);
+            g.fillRect(bounds.x, bounds.y, metrics.stringWidth(overlay) + 8, bounds.height);
+            g.setColor(Color.WHITE);
+            g.setFont(OVERLAY_FONT);
+            g.drawString(overlay, bounds.x + 4, bounds.y + 2 + metrics.getAscent());
+        }
+    }
+
+    /**
+     * Sets the text shown over the top left corner of the visible cells, such as performance figures.
+     *
+     * @param overlay The text, on a single line, or {@code null} to show none.
+     */
+    public void setOverlay(String overlay) {
+        if (this.overlay != null) {
+            repaint(overlayBounds());
+        }
+        this.overlay = overlay;
+        if (overlay != null) {
+            repaint(overlayBounds());
+        }
+    }
+
+    /**
+     * Finds the area the overlay is drawn in: a strip along the top of the visible part of the canvas.
+     *
+     * @return The area.
+     */
+    private Rectangle overlayBounds() {
+        Rectangle visible = getVisibleRect();
+        int height = getFontMetrics(OVERLAY_FONT).getHeight() + 4;
+        return new Rectangle(visible.x, visible.y, visible.width, height);
+    }
+
+    /**
+     * Finds the row of the cell under a point of the canvas.
+     *
+     * @param y The vertical position in pixels.
+     * @return The row, or -1 if the point is outside the grid.
+     */
+    public int getRowAt(int y) {
+        int row = y / cellSize;
+        return (y >= 0 && row < rows) ? row : -1;
+    }
+
+    /**
+     * Finds the column of the cell under a point of the canvas.
+     *
+     * @param x The horizontal position in pixels.
+     * @return The column, or -1 if the point is outside the grid.
+     */
+    public int getColAt(int x) {
+        int col = x / cellSize;
+        return (x >= 0 && col < cols) ? col : -1;
+    }
+
+    /**
+     * Sets the colour of living cells and repaints them on the next frame.
+     *
+     * @param cellColour The colour of living cells.
+     */
+    public void setCellColour(Color cellColour) {
+        palette[ALIVE] = cellColour;
+        // every living cell changes colour, so force a full check
+        for (int i = 0; i < paintedShades.length; i++) {
+            if (paintedShades[i] == ALIVE) {
+                paintedShades[i] = UNPAINTED;
+            }
+        }
+        invalid = true;
+    }
+
+    /**
+     * Enables or disables colouring living cells by their number of living neighbours.
+     *
+     * @param multicolour Whether multicolour mode is enabled.
+     */
+    public void setMulticolour(boolean multicolour) {
+        this.multicolour = multicolour;
+        invalid = true;
+    }
+
+    /**
+     * Checks whether multicolour mode is enabled.
+     *
+     * @return {@code true} if living cells are coloured by their number of living neighbours.
+     */
+    public boolean isMulticolour() {
+        return multicolour;
+    }
+
+    /**
+     * Enables or disables colouring living cells by their age, as a heatmap from newborn to long-lived cells.
+     * It takes precedence over multicolour mode.
+     *
+     * @param ageColour Whether age colouring is enabled.
+     */
+    public void setAgeColour(boolean ageColour) {
+        this.ageColour = ageColour;
+        invalid = true;
+    }
+
+    /**
+     * Checks whether age colouring is enabled.
+     *
+     * @return {@code true} if living cells are coloured by their age.
+     */
+    public boolean isAgeColour() {
+        return ageColour;
+    }
+}
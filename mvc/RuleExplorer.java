@@ -0,0 +1,336 @@
+package mvc;
+
+import engine.Rule;
+import engine.RuleSweep;
+import main.Languages;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Window sweeping many rules at once with a {@link RuleSweep} and listing how each behaves in a table that
+ * sorts on any column. The sweep runs on threads of its own; its results are queued and added to the table
+ * a few times per second, so even sweeping all 2^18 rules keeps the window responsive. Double-clicking a
+ * rule applies it to the game.
+ */
+public class RuleExplorer {
+
+    /**
+     * Milliseconds between two updates of the table while sweeping.
+     */
+    private static final int REFRESH_MILLIS = 250;
+
+    /**
+     * The language of the window.
+     */
+    private final String language;
+
+    /**
+     * Receives the rule the user double-clicked.
+     */
+    private final Consumer<Rule> apply;
+
+    /**
+     * Results of the running sweep not added to the table yet.
+     */
+    private final ConcurrentLinkedQueue<RuleSweep.Result> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The results listed in the table.
+     */
+    private final ResultModel results = new ResultModel();
+
+    /**
+     * The window.
+     */
+    private final JFrame frame;
+
+    /**
+     * Text field for entering the rules to sweep.
+     */
+    private final JTextField rules = new JTextField("all", 16);
+
+    /**
+     * Text field for entering the number of soups every rule runs.
+     */
+    private final JTextField soups = new JTextField("4", 3);
+
+    /**
+     * Text field for entering the generations after which a soup counts as chaotic.
+     */
+    private final JTextField generations = new JTextField("256", 5);
+
+    /**
+     * Button starting a sweep.
+     */
+    private final JButton start;
+
+    /**
+     * Button stopping the sweep.
+     */
+    private final JButton stop;
+
+    /**
+     * Shows how many rules were swept.
+     */
+    private final JProgressBar progress = new JProgressBar();
+
+    /**
+     * Moves the queued results into the table while sweeping.
+     */
+    private final Timer refresh;
+
+    /**
+     * The running sweep, or {@code null}.
+     */
+    private RuleSweep sweep;
+
+    /**
+     * The number of rules of the running sweep.
+     */
+    private int total;
+
+    /**
+     * Constructs the window, without showing it.
+     *
+     * @param language - language to use
+     * @param apply    - receives the rule the user double-clicked, on the Swing thread
+     */
+    public RuleExplorer(String language, Consumer<Rule> apply) {
+        this.language = language;
+        this.apply = apply;
+        frame = new JFrame(Languages.EXPLORER.get(language));
+        frame.setSize(640, 480);
+        frame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        refresh = new Timer(REFRESH_MILLIS, e -> drain());
+
+        JPanel header = new JPanel(new FlowLayout());
+        start = new JButton(Languages.START.get(language));
+        stop = new JButton(Languages.STOP.get(language));
+        stop.setEnabled(false);
+        progress.setStringPainted(true);
+        header.add(new JLabel(Languages.RULES.get(language)));
+        header.add(rules);
+        header.add(new JLabel(Languages.SOUPS.get(language)));
+        header.add(soups);
+        header.add(new JLabel(Languages.GENERATIONS.get(language)));
+        header.add(generations);
+        header.add(start);
+        header.add(stop);
+
+        JTable table = new JTable(results);
+        table.setAutoCreateRowSorter(true);
+        table.setDefaultRenderer(RuleSweep.Behaviour.class, new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText((value == null) ? "" : behaviourName((RuleSweep.Behaviour) value));
+            }
+        });
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (e.getClickCount() == 2 && row >= 0) {
+                    apply.accept(results.get(table.convertRowIndexToModel(row)).getRule());
+                }
+            }
+        });
+
+        start.addActionListener(e -> startSweep());
+        stop.addActionListener(e -> {
+            if (sweep != null) {
+                sweep.cancel();
+            }
+        });
+        frame.add(header, BorderLayout.NORTH);
+        frame.add(new JScrollPane(table), BorderLayout.CENTER);
+        frame.add(progress, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Shows the window.
+     */
+    public void show() {
+        frame.setVisible(true);
+    }
+
+    /**
+     * Starts sweeping the rules entered on a thread of its own, replacing the results listed.
+     */
+    private void startSweep() {
+        List<Rule> list;
+        RuleSweep next = new RuleSweep();
+        try {
+            list = RuleSweep.parseRules(rules.getText());
+            next.setSoups(Integer.parseInt(soups.getText().trim()));
+            next.setGenerations(Integer.parseInt(generations.getText().trim()));
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(frame, ex.getMessage(), Languages.EXPLORER.get(language),
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        sweep = next;
+        total = list.size();
+        pending.clear();
+        results.clear();
+        progress.setMaximum(total);
+        progress.setValue(0);
+        progress.setString("0 / " + total);
+        start.setEnabled(false);
+        stop.setEnabled(true);
+        refresh.start();
+        Thread worker = new Thread(() -> {
+            next.run(list, pending::add);
+            SwingUtilities.invokeLater(() -> finish(next));
+        }, "rule-sweep");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Lists the last results once a sweep ended.
+     *
+     * @param finished - the sweep that ended
+     */
+    private void finish(RuleSweep finished) {
+        if (sweep != finished) {
+            return;
+        }
+        refresh.stop();
+        drain();
+        sweep = null;
+        start.setEnabled(true);
+        stop.setEnabled(false);
+    }
+
+    /**
+     * Moves the queued results into the table and updates the progress.
+     */
+    private void drain() {
+        List<RuleSweep.Result> batch = new ArrayList<>();
+        for (RuleSweep.Result result; (result = pending.poll()) != null; ) {
+            batch.add(result);
+        }
+        results.addAll(batch);
+        progress.setValue(results.getRowCount());
+        progress.setString(results.getRowCount() + " / " + total);
+    }
+
+    /**
+     * Names a behaviour in the language of the window.
+     *
+     * @param behaviour - the behaviour
+     * @return - the name
+     */
+    private String behaviourName(RuleSweep.Behaviour behaviour) {
+        return switch (behaviour) {
+            case DIES -> Languages.DIES.get(language);
+            case STABLE -> Languages.STABLE.get(language);
+            case OSCILLATES -> Languages.OSCILLATES.get(language);
+            case GROWS -> Languages.GROWS.get(language);
+            case CHAOTIC -> Languages.CHAOTIC.get(language);
+        };
+    }
+
+    /**
+     * Table of results, one rule per row. Columns hold numbers and behaviours rather than text, so the
+     * table sorts them by value.
+     */
+    private class ResultModel extends AbstractTableModel {
+
+        /**
+         * Swing models are serializable and require serialVersionUID
+         */
+        private static final long serialVersionUID = 4467310185236647032L;
+
+        /**
+         * The results, in the order they were swept.
+         */
+        private final transient List<RuleSweep.Result> rows = new ArrayList<>();
+
+        /**
+         * Gets a result.
+         *
+         * @param row - index of the row in the model
+         * @return - the result
+         */
+        RuleSweep.Result get(int row) {
+            return rows.get(row);
+        }
+
+        /**
+         * Removes every row.
+         */
+        void clear() {
+            rows.clear();
+            fireTableDataChanged();
+        }
+
+        /**
+         * Appends rows.
+         *
+         * @param batch - the results to append
+         */
+        void addAll(List<RuleSweep.Result> batch) {
+            if (!batch.isEmpty()) {
+                int first = rows.size();
+                rows.addAll(batch);
+                fireTableRowsInserted(first, rows.size() - 1);
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 6;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return switch (column) {
+                case 0 -> Languages.RULE.get(language);
+                case 1 -> Languages.BINARY.get(language);
+                case 2 -> Languages.BEHAVIOUR.get(language);
+                case 3 -> Languages.PERIOD.get(language);
+                case 4 -> Languages.SETTLED.get(language);
+                default -> Languages.FINAL_DENSITY.get(language);
+            };
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return switch (column) {
+                case 0, 1 -> String.class;
+                case 2 -> RuleSweep.Behaviour.class;
+                case 3 -> Integer.class;
+                default -> Double.class;
+            };
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            RuleSweep.Result result = rows.get(row);
+            return switch (column) {
+                case 0 -> result.getRule().toString();
+                case 1 -> result.getRule().toBinaryString();
+                case 2 -> result.getBehaviour();
+                case 3 -> result.getPeriod();
+                case 4 -> Math.round(result.getGenerations() * 10) / 10.0;
+                default -> Math.round(result.getDensity() * 1000) / 10.0;
+            };
+        }
+    }
+}